@@ -0,0 +1,74 @@
+-- Stats read paths at 10M events: index-only scans on the V3 covering indexes.
+--
+-- Run with psql against a SCRATCH database that the app has already migrated
+-- (it truncates events):
+--
+--   createdb factory_bench
+--   ./mvnw spring-boot:run -Dspring-boot.run.arguments=--spring.datasource.url=jdbc:postgresql://localhost:5435/factory_bench
+--   psql -h localhost -p 5435 -U factory_user -d factory_bench -f docs/sql/stats-index-benchmark.sql
+--
+-- Data: 10M events over 30 days, 200 machines, 10 factories x 20 lines, ~1% defect_count = -1.
+-- Results from one run are in BENCHMARK.md.
+
+\timing on
+
+TRUNCATE events;
+
+INSERT INTO events (event_id, event_time, received_time, machine_id, duration_ms, defect_count,
+                    factory_id, line_id, payload_hash, created_at, updated_at)
+SELECT 'BENCH-' || g,
+       timestamptz '2026-01-01 00:00:00+00' + (g % 2592000) * interval '1 second' + (g / 2592000) * interval '250 milliseconds',
+       now(),
+       'M-' || (g % 200),
+       1000 + g % 5000,
+       CASE WHEN g % 97 = 0 THEN -1 ELSE g % 5 END,
+       'F' || lpad(((g % 200) / 20)::text, 2, '0'),
+       'L' || (g % 20),
+       md5(g::text),
+       now(),
+       now()
+FROM generate_series(1, 10000000) AS g;
+
+-- index-only scans need an up-to-date visibility map
+VACUUM (ANALYZE) events;
+VACUUM (ANALYZE) machine_hourly_stats;
+
+-- 1) Before: two round trips over the same predicate
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT count(*) FROM events
+WHERE machine_id = 'M-42' AND event_time >= '2026-01-01 00:00+00' AND event_time < '2026-01-31 00:00+00';
+
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT coalesce(sum(defect_count), 0) FROM events
+WHERE machine_id = 'M-42' AND event_time >= '2026-01-01 00:00+00' AND event_time < '2026-01-31 00:00+00'
+  AND defect_count >= 0;
+
+-- 2) After, raw path (events.stats.rollup.enabled=false): one aggregate, one index-only scan
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT count(*), coalesce(sum(CASE WHEN defect_count >= 0 THEN defect_count ELSE 0 END), 0) FROM events
+WHERE machine_id = 'M-42' AND event_time >= '2026-01-01 00:00+00' AND event_time < '2026-01-31 00:00+00';
+
+-- 3) After, rollup path (default): whole hours from machine_hourly_stats, edges index-only
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT coalesce(sum(t.events_count), 0)::bigint, coalesce(sum(t.defects_count), 0)::bigint
+FROM (
+    SELECT h.events_count, h.defects_count FROM machine_hourly_stats h
+    WHERE h.machine_id = 'M-42' AND h.hour_start >= '2026-01-01 01:00+00' AND h.hour_start < '2026-01-30 23:00+00'
+    UNION ALL
+    SELECT count(*), coalesce(sum(e.defect_count) FILTER (WHERE e.defect_count >= 0), 0) FROM events e
+    WHERE e.machine_id = 'M-42' AND e.event_time >= '2026-01-01 00:17+00' AND e.event_time < '2026-01-01 01:00+00'
+    UNION ALL
+    SELECT count(*), coalesce(sum(e.defect_count) FILTER (WHERE e.defect_count >= 0), 0) FROM events e
+    WHERE e.machine_id = 'M-42' AND e.event_time >= '2026-01-30 23:00+00' AND e.event_time < '2026-01-30 23:41+00'
+) t;
+
+-- 4) Top defect lines of one factory over 7 days (rankBy=percent, ranking + LIMIT in the query)
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT line_id, sum(defect_count) AS total_defects, count(*) AS event_count,
+       (round(sum(defect_count)::numeric / count(*), 4) * 100)::float8 AS defects_percent
+FROM events
+WHERE factory_id = 'F03' AND event_time >= '2026-01-10 00:00+00' AND event_time < '2026-01-17 00:00+00'
+  AND defect_count >= 0 AND line_id IS NOT NULL
+GROUP BY line_id
+ORDER BY sum(defect_count)::numeric / count(*) DESC, total_defects DESC, line_id
+LIMIT 10;
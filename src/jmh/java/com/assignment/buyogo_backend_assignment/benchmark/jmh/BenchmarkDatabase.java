@@ -0,0 +1,64 @@
+package com.assignment.buyogo_backend_assignment.benchmark.jmh;
+
+import com.assignment.buyogo_backend_assignment.BuyogoBackendAssignmentApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+/**
+ * Spring context backed by a throwaway Testcontainers Postgres, used by the
+ * repository/stats benchmarks. Pass -Djmh.jdbc.url=... (plus jmh.jdbc.user /
+ * jmh.jdbc.password) to run against an existing database instead; its events
+ * table is truncated so every trial starts from the same state.
+ */
+public final class BenchmarkDatabase implements AutoCloseable {
+
+    private final PostgreSQLContainer<?> postgres;
+    private final ConfigurableApplicationContext context;
+
+    private BenchmarkDatabase(PostgreSQLContainer<?> postgres, String url, String user, String password) {
+        this.postgres = postgres;
+        this.context = new SpringApplicationBuilder(BuyogoBackendAssignmentApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=" + url,
+                        "spring.datasource.username=" + user,
+                        "spring.datasource.password=" + password,
+                        "spring.jpa.hibernate.ddl-auto=validate",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN")
+                .run();
+    }
+
+    public static BenchmarkDatabase start() {
+        String url = System.getProperty("jmh.jdbc.url");
+        if (url != null) {
+            BenchmarkDatabase database = new BenchmarkDatabase(null, url,
+                    System.getProperty("jmh.jdbc.user", "factory_user"),
+                    System.getProperty("jmh.jdbc.password", "factory_pass"));
+            database.bean(JdbcTemplate.class).execute("TRUNCATE TABLE events");
+            return database;
+        }
+
+        PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine")
+                .withDatabaseName("benchdb")
+                .withUsername("bench")
+                .withPassword("bench");
+        postgres.start();
+        return new BenchmarkDatabase(postgres, postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+    }
+
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    @Override
+    public void close() {
+        context.close();
+        if (postgres != null) {
+            postgres.stop();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.assignment.buyogo_backend_assignment.benchmark.jmh;
+
+import com.assignment.buyogo_backend_assignment.repository.EventRow;
+import com.assignment.buyogo_backend_assignment.request.EventRequest;
+import com.assignment.buyogo_backend_assignment.util.EventPayloadHashUtil;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic event fixtures shared by the JMH benchmarks.
+ * Same shape as the events generated by BenchmarkRunner.
+ */
+public final class BenchmarkEvents {
+
+    private BenchmarkEvents() {
+    }
+
+    public static List<EventRequest> requests(int count, String prefix) {
+        List<EventRequest> events = new ArrayList<>(count);
+
+        Random random = new Random(42); // deterministic
+        Instant baseTime = Instant.now().minus(3, ChronoUnit.HOURS);
+
+        for (int i = 0; i < count; i++) {
+            events.add(new EventRequest(
+                    prefix + "-" + i,
+                    baseTime.plus(i, ChronoUnit.SECONDS),
+                    "M-" + (i % 10),
+                    1000L + random.nextInt(5000),
+                    random.nextInt(5),
+                    "F01",
+                    "L" + (i % 5)
+            ));
+        }
+        return events;
+    }
+
+    public static List<EventRow> rows(List<EventRequest> requests) {
+        List<EventRow> events = new ArrayList<>(requests.size());
+        Instant receivedTime = Instant.now();
+        for (EventRequest req : requests) {
+            events.add(new EventRow(
+                    req.eventId(),
+                    req.eventTime(),
+                    receivedTime,
+                    req.machineId(),
+                    req.durationMs(),
+                    req.defectCount(),
+                    req.factoryId(),
+                    req.lineId(),
+                    EventPayloadHashUtil.computeHash(req)));
+        }
+        return events;
+    }
+}
@@ -0,0 +1,61 @@
+package com.assignment.buyogo_backend_assignment.benchmark.jmh;
+
+import com.assignment.buyogo_backend_assignment.repository.EventBulkRepository;
+import com.assignment.buyogo_backend_assignment.repository.EventRow;
+import com.assignment.buyogo_backend_assignment.repository.UpsertOutcome;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EventBulkRepository.bulkUpsert against a real Postgres.
+ * insert: every invocation writes a batch of brand-new event ids.
+ * replay: the same batch is sent again and again (conflict + no-op path).
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BulkUpsertBenchmark {
+
+    @Param({"1000", "5000"})
+    public int batchSize;
+
+    @Param({"insert", "replay"})
+    public String mode;
+
+    private BenchmarkDatabase database;
+    private EventBulkRepository repository;
+    private List<EventRow> batch;
+    private int invocation;
+
+    @Setup(Level.Trial)
+    public void startDatabase() {
+        database = BenchmarkDatabase.start();
+        repository = database.bean(EventBulkRepository.class);
+        if ("replay".equals(mode)) {
+            batch = BenchmarkEvents.rows(BenchmarkEvents.requests(batchSize, "REPLAY-" + batchSize));
+            repository.bulkUpsert(batch);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void nextBatch() {
+        if ("insert".equals(mode)) {
+            batch = BenchmarkEvents.rows(BenchmarkEvents.requests(batchSize, "UPSERT-" + batchSize + "-" + invocation++));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopDatabase() {
+        database.close();
+    }
+
+    @Benchmark
+    public UpsertOutcome[] bulkUpsert() {
+        return repository.bulkUpsert(batch);
+    }
+}
@@ -0,0 +1,118 @@
+package com.assignment.buyogo_backend_assignment.benchmark.jmh;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares a JMH JSON result with the stored baseline and exits non-zero on regression.
+ *
+ * Checked per benchmark (+ params): p50, p99 and gc.alloc.rate.norm (bytes/op).
+ * All three are "lower is better" because the benchmarks run in SampleTime mode.
+ * A benchmark (+ params) missing from the baseline also fails the check: it would otherwise
+ * never be compared, so add or rename a benchmark together with --update.
+ *
+ * Usage: JmhBaselineCheck baseline.json result.json [threshold, default 0.15 = +15%]
+ *        JmhBaselineCheck --update baseline.json result.json   (stores result as the new baseline)
+ */
+public class JmhBaselineCheck {
+
+    private static final String ALLOC_NORM = "gc.alloc.rate.norm";
+
+    public static void main(String[] args) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        if (args.length == 3 && "--update".equals(args[0])) {
+            updateBaseline(mapper, new File(args[1]), new File(args[2]));
+            return;
+        }
+        if (args.length < 2) {
+            System.err.println("usage: JmhBaselineCheck [--update] <baseline.json> <result.json> [threshold]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 0.15;
+
+        Map<String, JsonNode> baseline = index(mapper.readTree(new File(args[0])));
+        Map<String, JsonNode> current = index(mapper.readTree(new File(args[1])));
+
+        int regressions = 0;
+        int missing = 0;
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode base = baseline.get(entry.getKey());
+            if (base == null) {
+                System.out.printf("NEW   %s (no baseline)%n", entry.getKey());
+                missing++;
+                continue;
+            }
+            JsonNode run = entry.getValue();
+            regressions += compare(entry.getKey(), "p50", percentile(base, "50.0"), percentile(run, "50.0"), threshold);
+            regressions += compare(entry.getKey(), "p99", percentile(base, "99.0"), percentile(run, "99.0"), threshold);
+            regressions += compare(entry.getKey(), "alloc B/op", allocNorm(base), allocNorm(run), threshold);
+        }
+
+        if (regressions > 0) {
+            System.out.printf("%d regression(s) above %.0f%% of baseline%n", regressions, threshold * 100);
+        }
+        if (missing > 0) {
+            System.out.printf("%d benchmark(s) without a baseline, store one with --update (jmh-baseline)%n", missing);
+        }
+        if (regressions > 0 || missing > 0) {
+            System.exit(1);
+        }
+        System.out.println("No regressions against baseline");
+    }
+
+    /**
+     * Raw samples make SampleTime results ~1MB, only percentiles and scores are kept.
+     */
+    private static void updateBaseline(ObjectMapper mapper, File baseline, File result) throws IOException {
+        JsonNode results = mapper.readTree(result);
+        for (JsonNode r : results) {
+            strip((ObjectNode) r.path("primaryMetric"));
+            r.path("secondaryMetrics").forEach(m -> strip((ObjectNode) m));
+        }
+        mapper.writerWithDefaultPrettyPrinter().writeValue(baseline, results);
+        System.out.println("Baseline written to " + baseline);
+    }
+
+    private static void strip(ObjectNode metric) {
+        metric.remove("rawData");
+        metric.remove("rawDataHistogram");
+    }
+
+    private static int compare(String name, String metric, double base, double run, double threshold) {
+        if (Double.isNaN(base) || Double.isNaN(run)) {
+            return 0;
+        }
+        // allocation can legitimately be ~0 B/op, ignore noise below 16 bytes
+        boolean regressed = run > base * (1 + threshold) && run - base > 16;
+        System.out.printf("%-5s %s [%s] baseline=%.2f current=%.2f%n",
+                regressed ? "SLOW" : "OK", name, metric, base, run);
+        return regressed ? 1 : 0;
+    }
+
+    private static Map<String, JsonNode> index(JsonNode results) {
+        Map<String, JsonNode> byKey = new LinkedHashMap<>();
+        for (JsonNode result : results) {
+            StringBuilder key = new StringBuilder(result.path("benchmark").asText());
+            result.path("params").fields().forEachRemaining(p ->
+                    key.append(' ').append(p.getKey()).append('=').append(p.getValue().asText()));
+            byKey.put(key.toString(), result);
+        }
+        return byKey;
+    }
+
+    private static double percentile(JsonNode result, String percentile) {
+        JsonNode value = result.path("primaryMetric").path("scorePercentiles").get(percentile);
+        return value != null ? value.asDouble() : Double.NaN;
+    }
+
+    private static double allocNorm(JsonNode result) {
+        JsonNode value = result.path("secondaryMetrics").path(ALLOC_NORM).get("score");
+        return value != null ? value.asDouble() : Double.NaN;
+    }
+}
@@ -0,0 +1,38 @@
+package com.assignment.buyogo_backend_assignment.benchmark.jmh;
+
+import com.assignment.buyogo_backend_assignment.request.EventRequest;
+import com.assignment.buyogo_backend_assignment.util.EventPayloadHashUtil;
+import com.assignment.buyogo_backend_assignment.util.HashAlgorithm;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of hashing a single event payload (run with -prof gc for B/op).
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PayloadHashBenchmark {
+
+    @Param({"SHA_256", "MURMUR3_128"})
+    public HashAlgorithm algorithm;
+
+    private List<EventRequest> events;
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        events = BenchmarkEvents.requests(1024, "HASH");
+    }
+
+    @Benchmark
+    public String computeHash() {
+        EventRequest event = events.get(cursor++ & 1023);
+        return EventPayloadHashUtil.computeHash(event, algorithm);
+    }
+}
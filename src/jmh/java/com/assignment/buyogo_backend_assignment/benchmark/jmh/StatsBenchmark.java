@@ -0,0 +1,70 @@
+package com.assignment.buyogo_backend_assignment.benchmark.jmh;
+
+import com.assignment.buyogo_backend_assignment.repository.EventBulkRepository;
+import com.assignment.buyogo_backend_assignment.request.DefectLineRanking;
+import com.assignment.buyogo_backend_assignment.request.EventRequest;
+import com.assignment.buyogo_backend_assignment.request.StatsRequest;
+import com.assignment.buyogo_backend_assignment.response.DefectLineResponse;
+import com.assignment.buyogo_backend_assignment.response.StatsResponse;
+import com.assignment.buyogo_backend_assignment.service.StatsService;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StatsServiceImpl queries over a seeded table (50k events, 10 machines, 5 lines).
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StatsBenchmark {
+
+    private static final int SEED_EVENTS = 50_000;
+    private static final int SEED_CHUNK = 5_000;
+
+    private BenchmarkDatabase database;
+    private StatsService statsService;
+    private Instant from;
+    private Instant to;
+
+    @Setup(Level.Trial)
+    public void seed() {
+        database = BenchmarkDatabase.start();
+        statsService = database.bean(StatsService.class);
+        EventBulkRepository repository = database.bean(EventBulkRepository.class);
+
+        for (int offset = 0; offset < SEED_EVENTS; offset += SEED_CHUNK) {
+            List<EventRequest> chunk = BenchmarkEvents.requests(SEED_CHUNK, "STATS-" + offset);
+            repository.bulkUpsert(BenchmarkEvents.rows(chunk));
+        }
+
+        to = Instant.now();
+        from = to.minus(4, ChronoUnit.HOURS);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopDatabase() {
+        database.close();
+    }
+
+    @Benchmark
+    public StatsResponse getStats() {
+        return statsService.getStats(new StatsRequest("M-1", from, to));
+    }
+
+    @Benchmark
+    public List<DefectLineResponse> getDefectsLine() {
+        return statsService.getDefectsLine("F01", from, to, 10, DefectLineRanking.DEFECTS);
+    }
+
+    @Benchmark
+    public List<DefectLineResponse> getDefectsLineByPercent() {
+        return statsService.getDefectsLine("F01", from, to, 10, DefectLineRanking.PERCENT);
+    }
+}
@@ -0,0 +1,59 @@
+package com.assignment.buyogo_backend_assignment.benchmark.jmh;
+
+import com.assignment.buyogo_backend_assignment.request.EventRequest;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a 1000 event batch body as JSON, Smile and CBOR, configured like WebConfig.
+ * The binary bodies carry eventTime as epoch millis; the body size is printed in setup.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class WireFormatBenchmark {
+
+    private static final TypeReference<List<EventRequest>> BATCH = new TypeReference<>() {
+    };
+
+    @Param({"json", "smile", "cbor"})
+    public String format;
+
+    private ObjectMapper mapper;
+    private byte[] body;
+
+    @Setup
+    public void setup() throws IOException {
+        Jackson2ObjectMapperBuilder builder = switch (format) {
+            case "json" -> Jackson2ObjectMapperBuilder.json();
+            case "smile" -> Jackson2ObjectMapperBuilder.smile();
+            case "cbor" -> Jackson2ObjectMapperBuilder.cbor();
+            default -> throw new IllegalArgumentException(format);
+        };
+        boolean binary = !"json".equals(format);
+        if (binary) {
+            builder.featuresToEnable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                    .featuresToDisable(SerializationFeature.WRITE_DATE_TIMESTAMPS_AS_NANOSECONDS,
+                            DeserializationFeature.READ_DATE_TIMESTAMPS_AS_NANOSECONDS);
+        }
+        mapper = builder.build();
+        body = mapper.writeValueAsBytes(BenchmarkEvents.requests(1000, "WIRE"));
+        System.out.printf("%n%s body: %d bytes%n", format, body.length);
+    }
+
+    @Benchmark
+    public List<EventRequest> decodeBatch() throws IOException {
+        return mapper.readValue(body, BATCH);
+    }
+}
@@ -0,0 +1,66 @@
+package com.assignment.buyogo_backend_assignment.service.serviceImpl;
+
+import com.assignment.buyogo_backend_assignment.benchmark.jmh.BenchmarkEvents;
+import com.assignment.buyogo_backend_assignment.repository.UpsertOutcome;
+import com.assignment.buyogo_backend_assignment.request.EventRequest;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU-only parts of EventServiceImpl: per-event validation and the
+ * accepted/deduped/updated classification of a whole batch.
+ * Lives in the service package because both methods are package-private.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventServiceBenchmark {
+
+    @State(Scope.Thread)
+    public static class ValidationState {
+        EventServiceImpl service;
+        List<EventRequest> requests;
+        int cursor;
+
+        @Setup
+        public void setup() {
+            service = new EventServiceImpl(null, null, null, null, null, null, null, null);
+            requests = BenchmarkEvents.requests(1024, "VAL");
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class BatchState {
+        @Param({"1000", "5000"})
+        public int batchSize;
+
+        UpsertOutcome[] outcomes;
+
+        @Setup
+        public void setup() {
+            // ~1/3 of the batch already exists: half identical, half with a different payload
+            outcomes = new UpsertOutcome[batchSize];
+            for (int i = 0; i < batchSize; i++) {
+                if (i % 3 != 0) {
+                    outcomes[i] = UpsertOutcome.INSERTED;
+                } else {
+                    outcomes[i] = i % 2 == 0 ? UpsertOutcome.SKIPPED : UpsertOutcome.UPDATED;
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void validateEvent(ValidationState state) {
+        state.service.validateEvent(state.requests.get(state.cursor++ & 1023));
+    }
+
+    @Benchmark
+    public EventServiceImpl.Classification classifyBatch(BatchState state) {
+        return EventServiceImpl.classify(state.outcomes);
+    }
+}
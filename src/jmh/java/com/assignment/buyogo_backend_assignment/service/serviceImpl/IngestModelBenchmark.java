@@ -0,0 +1,84 @@
+package com.assignment.buyogo_backend_assignment.service.serviceImpl;
+
+import com.assignment.buyogo_backend_assignment.benchmark.jmh.BenchmarkEvents;
+import com.assignment.buyogo_backend_assignment.repository.EventRow;
+import com.assignment.buyogo_backend_assignment.request.EventRequest;
+import com.assignment.buyogo_backend_assignment.util.EventPayloadHashUtil;
+import com.assignment.buyogo_backend_assignment.util.HashAlgorithm;
+import lombok.Builder;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turning a validated 1000-event batch into the ingest model: the JPA Event entity built per
+ * event with its own receivedTime and validation clock (before), against EventRow with one
+ * receivedTime per batch (now). Hashes are precomputed so only the model cost is measured;
+ * run with -prof gc for B/op. The entity is read-only now, so the "before" side builds
+ * LegacyEvent, the same fields and Lombok builder it had.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class IngestModelBenchmark {
+
+    private EventServiceImpl service;
+    private List<EventRequest> requests;
+    private String[] hashes;
+
+    @Setup
+    public void setup() {
+        service = new EventServiceImpl(null, null, null, null, null, null, null, null);
+        requests = BenchmarkEvents.requests(1000, "MODEL");
+        hashes = new String[requests.size()];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = EventPayloadHashUtil.computeHash(requests.get(i), HashAlgorithm.SHA_256);
+        }
+    }
+
+    @Benchmark
+    public List<LegacyEvent> entityPerEvent() {
+        List<LegacyEvent> events = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            EventRequest req = requests.get(i);
+            service.validateEvent(req);
+            events.add(LegacyEvent.builder()
+                    .eventId(req.eventId())
+                    .eventTime(req.eventTime())
+                    .receivedTime(Instant.now())
+                    .machineId(req.machineId())
+                    .durationMs(req.durationMs())
+                    .defectCount(req.defectCount())
+                    .factoryId(req.factoryId())
+                    .lineId(req.lineId())
+                    .payloadHash(hashes[i])
+                    .build());
+        }
+        return events;
+    }
+
+    @Benchmark
+    public List<EventRow> rowPerEvent() {
+        Instant receivedTime = Instant.now();
+        List<EventRow> events = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            EventRequest req = requests.get(i);
+            service.validateEvent(req, receivedTime);
+            events.add(new EventRow(req.eventId(), req.eventTime(), receivedTime, req.machineId(),
+                    req.durationMs(), req.defectCount(), req.factoryId(), req.lineId(), hashes[i]));
+        }
+        return events;
+    }
+
+    @Builder
+    public record LegacyEvent(Long id, String eventId, Instant eventTime, Instant receivedTime, String machineId,
+                              Long durationMs, Integer defectCount, String factoryId, String lineId,
+                              String payloadHash, Instant createdAt, Instant updatedAt) {
+    }
+}
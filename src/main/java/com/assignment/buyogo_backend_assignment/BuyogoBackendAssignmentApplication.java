@@ -2,10 +2,12 @@ package com.assignment.buyogo_backend_assignment;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import java.util.TimeZone;
 
 @SpringBootApplication
+@EnableScheduling
 public class BuyogoBackendAssignmentApplication {
 
     public static void main(String[] args) {
@@ -1,23 +1,36 @@
 package com.assignment.buyogo_backend_assignment.benchmark;
 
+import com.assignment.buyogo_backend_assignment.repository.EventBulkRepository;
+import com.assignment.buyogo_backend_assignment.repository.EventRow;
 import com.assignment.buyogo_backend_assignment.request.EventRequest;
 import com.assignment.buyogo_backend_assignment.response.BatchResponse;
 import com.assignment.buyogo_backend_assignment.service.EventService;
+import com.assignment.buyogo_backend_assignment.util.EventPayloadHashUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.context.ApplicationContext;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
 
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
 @Component
@@ -25,10 +38,21 @@ import java.util.concurrent.TimeUnit;
 @Slf4j
 public class BenchmarkRunner implements CommandLineRunner {
     private final EventService eventService;
+    private final EventBulkRepository eventBulkRepository;
     private final ApplicationContext applicationContext;
+    private final ObjectMapper objectMapper;
+    private final Environment environment;
+    private final LoadGenerator loadGenerator;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads = false;
 
     @Override
     public void run(String... args) throws Exception {
+        if (hasArg(args, "--load")) {
+            runLoad();
+            return;
+        }
         if (!hasArg(args, "--benchmark")) return;
 
         log.info("================================================================================");
@@ -44,6 +68,13 @@ public class BenchmarkRunner implements CommandLineRunner {
         // Concurrency benchmark: contention + overlap (tests thread-safety logic)
         runConcurrentBenchmarkWithOverlap();
 
+        // Repository level: JDBC batch vs binary COPY + merge
+        runBulkUpsertPathComparison(5000);
+        runBulkUpsertPathComparison(20000);
+
+        // End to end over HTTP: Tomcat platform threads vs virtual threads (+ admission limit)
+        runHttpBurstBenchmark(400, 4000);
+
         log.info("================================================================================");
         log.info("BENCHMARK COMPLETE");
         log.info("================================================================================");
@@ -52,6 +83,22 @@ public class BenchmarkRunner implements CommandLineRunner {
         System.exit(exitCode);
     }
 
+    /**
+     * Open-loop load / soak run instead of the fixed scenarios, configured with the
+     * benchmark.load.* properties (see LoadGenerator).
+     */
+    private void runLoad() throws Exception {
+        log.info("================================================================================");
+        log.info("LOAD TEST: open-loop ingestion at fixed event rates");
+        log.info("Run with: mvn spring-boot:run -Dspring-boot.run.arguments=\"--load --benchmark.load.events-per-second=5000,10000,20000\"");
+        log.info("================================================================================");
+
+        loadGenerator.run();
+
+        int exitCode = SpringApplication.exit(applicationContext, () -> 0);
+        System.exit(exitCode);
+    }
+
     private boolean hasArg(String[] args, String expected) {
         if (args == null) return false;
         for (String arg : args) {
@@ -113,7 +160,7 @@ public class BenchmarkRunner implements CommandLineRunner {
         final int threads = 5;
         final int perThread = 200;
 
-        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        ExecutorService executor = newExecutor(threads);
         List<Future<Long>> futures = new ArrayList<>();
 
         long startTotal = System.nanoTime();
@@ -154,6 +201,144 @@ public class BenchmarkRunner implements CommandLineRunner {
                 String.format("%.0f", (threads * perThread) / Math.max(totalSec, 0.000001)));
     }
 
+    /**
+     * Bursty gateway load against the running server: `concurrency` clients keep one request
+     * each in flight until `total` requests are done. Every 4th request posts a 20-event batch,
+     * the others read machine stats. Run once per mode and compare the logged numbers.
+     */
+    private void runHttpBurstBenchmark(int concurrency, int total) throws Exception {
+        log.info("\n--- Benchmark: HTTP burst ({} concurrent clients, {} requests, {} threads) ---",
+                concurrency, total, virtualThreads ? "virtual" : "platform");
+
+        String base = "http://localhost:" + environment.getProperty("local.server.port", "8092");
+        Instant statsEnd = Instant.now();
+        URI statsUri = URI.create(base + "/api/v1/stats?machineId=M-1&start="
+                + statsEnd.minus(24, ChronoUnit.HOURS) + "&end=" + statsEnd);
+        URI batchUri = URI.create(base + "/api/v1/events/batch");
+
+        Semaphore inFlight = new Semaphore(concurrency);
+        long[] latencies = new long[total];
+        int[] statuses = new int[total];
+        List<CompletableFuture<Void>> requests = new ArrayList<>(total);
+        double totalSec;
+
+        // the client's callbacks run on this pool; it is not a daemon pool, so it must not outlive the run
+        ExecutorService httpExecutor = Executors.newFixedThreadPool(8);
+        try {
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(httpExecutor)
+                    .build();
+
+            long startTotal = System.nanoTime();
+            for (int i = 0; i < total; i++) {
+                HttpRequest request = i % 4 == 0
+                        ? HttpRequest.newBuilder(batchUri)
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(
+                                objectMapper.writeValueAsBytes(generateEvents(20, "BURST-" + i, false))))
+                        .build()
+                        : HttpRequest.newBuilder(statsUri).GET().build();
+
+                inFlight.acquire();
+                final int index = i;
+                long sent = System.nanoTime();
+                requests.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                        .handle((response, error) -> {
+                            latencies[index] = System.nanoTime() - sent;
+                            statuses[index] = response != null ? response.statusCode() : -1;
+                            inFlight.release();
+                            return null;
+                        }));
+            }
+            CompletableFuture.allOf(requests.toArray(new CompletableFuture[0])).get(5, TimeUnit.MINUTES);
+            totalSec = (System.nanoTime() - startTotal) / 1_000_000_000.0;
+        } finally {
+            httpExecutor.shutdown();
+        }
+
+        int ok = 0;
+        int busy = 0;
+        int failed = 0;
+        for (int status : statuses) {
+            if (status == 200) ok++;
+            else if (status == 503 || status == 429) busy++;
+            else failed++;
+        }
+        Arrays.sort(latencies);
+
+        log.info("  - Throughput: {} requests/sec ({} ok, {} busy, {} failed)",
+                String.format("%.0f", total / totalSec), ok, busy, failed);
+        log.info("  - Latency p50: {} ms, p99: {} ms, p99.9: {} ms, max: {} ms",
+                fmtMs(percentile(latencies, 0.50)), fmtMs(percentile(latencies, 0.99)),
+                fmtMs(percentile(latencies, 0.999)), fmtMs(latencies[total - 1]));
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)];
+    }
+
+    /**
+     * Fixed platform pool, or one virtual thread per task when spring.threads.virtual.enabled
+     * is set (Java 21, looked up reflectively so the default build stays on Java 17).
+     */
+    private ExecutorService newExecutor(int platformThreads) {
+        if (!virtualThreads) {
+            return Executors.newFixedThreadPool(platformThreads);
+        }
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("spring.threads.virtual.enabled needs Java 21 or newer", e);
+        }
+    }
+
+    /**
+     * Times both EventBulkRepository paths (single unnest statement vs COPY + merge) on the same batch size:
+     * first with brand-new ids (all inserts), then replaying the same batch (all no-ops).
+     */
+    private void runBulkUpsertPathComparison(int count) {
+        log.info("\n--- Benchmark: bulkUpsert unnest statement vs COPY ({} events) ---", count);
+
+        List<EventRow> arrays = toRows(generateEvents(count, "PATH-ARRAYS-" + count, false));
+        List<EventRow> copy = toRows(generateEvents(count, "PATH-COPY-" + count, false));
+
+        long arraysInsertNs = timeNs(() -> eventBulkRepository.bulkUpsertArrays(arrays));
+        long copyInsertNs = timeNs(() -> eventBulkRepository.bulkUpsertCopy(copy));
+        long arraysReplayNs = timeNs(() -> eventBulkRepository.bulkUpsertArrays(arrays));
+        long copyReplayNs = timeNs(() -> eventBulkRepository.bulkUpsertCopy(copy));
+
+        log.info("  - unnest statement insert: {} ms, replay: {} ms", fmtMs(arraysInsertNs), fmtMs(arraysReplayNs));
+        log.info("  - COPY + merge insert: {} ms, replay: {} ms", fmtMs(copyInsertNs), fmtMs(copyReplayNs));
+        log.info("  - COPY speedup: insert x{}, replay x{}",
+                String.format("%.2f", (double) arraysInsertNs / copyInsertNs),
+                String.format("%.2f", (double) arraysReplayNs / copyReplayNs));
+    }
+
+    private long timeNs(Runnable action) {
+        long start = System.nanoTime();
+        action.run();
+        return System.nanoTime() - start;
+    }
+
+    private List<EventRow> toRows(List<EventRequest> requests) {
+        List<EventRow> events = new ArrayList<>(requests.size());
+        Instant receivedTime = Instant.now();
+        for (EventRequest req : requests) {
+            events.add(new EventRow(
+                    req.eventId(),
+                    req.eventTime(),
+                    receivedTime,
+                    req.machineId(),
+                    req.durationMs(),
+                    req.defectCount(),
+                    req.factoryId(),
+                    req.lineId(),
+                    EventPayloadHashUtil.computeHash(req)));
+        }
+        return events;
+    }
+
     /**
      * Generates VALID events:
      * - eventTime always in the past (so it never violates future-time validation).
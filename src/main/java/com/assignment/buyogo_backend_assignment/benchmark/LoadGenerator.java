@@ -0,0 +1,455 @@
+package com.assignment.buyogo_backend_assignment.benchmark;
+
+import com.assignment.buyogo_backend_assignment.request.EventRequest;
+import com.assignment.buyogo_backend_assignment.response.BatchResponse;
+import com.assignment.buyogo_backend_assignment.service.EventService;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load generator for soak tests and for finding the saturation point of ingestion.
+ *
+ * Batches are scheduled at fixed intended start times derived from the target events/sec,
+ * whether or not earlier batches have finished. Latency is measured from the intended start,
+ * so time a batch spent waiting behind a slow system (or for a free in-flight slot) is
+ * counted instead of hidden (coordinated omission). The time from actual send to response
+ * is recorded separately as service time.
+ *
+ * Each rate in events-per-second runs as one step after a shared warmup; the JSON report
+ * has totals, latency percentiles and per-second intervals for every step.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+class LoadGenerator {
+
+    // a step whose achieved rate falls this far below its target is saturated
+    private static final double SATURATION_RATE_RATIO = 0.95;
+    // exact resends / updates pick from this many recently sent events
+    private static final int HISTORY_SIZE = 100_000;
+
+    private final EventService eventService;
+    private final ObjectMapper objectMapper;
+    private final Environment environment;
+
+    // service (in process) or http (POST /api/v1/events/batch on this server)
+    @Value("${benchmark.load.target:service}")
+    private String target = "service";
+
+    // one step per rate, e.g. 2000,5000,10000,20000 to search for the saturation point
+    @Value("${benchmark.load.events-per-second:2000}")
+    private int[] eventsPerSecond = {2000};
+
+    @Value("${benchmark.load.duration-seconds:30}")
+    private int durationSeconds = 30;
+
+    @Value("${benchmark.load.warmup-seconds:10}")
+    private int warmupSeconds = 10;
+
+    @Value("${benchmark.load.machines:50}")
+    private int machines = 50;
+
+    // size:weight pairs, e.g. 20:70,500:25,5000:5
+    @Value("${benchmark.load.batch-sizes:20:70,500:25,5000:5}")
+    private String batchSizes = "20:70,500:25,5000:5";
+
+    // share of events that are exact resends / changed payloads of recently sent events
+    @Value("${benchmark.load.duplicate-ratio:0.1}")
+    private double duplicateRatio = 0.1;
+
+    @Value("${benchmark.load.update-ratio:0.05}")
+    private double updateRatio = 0.05;
+
+    // batches past this are not sent until one completes; their wait still counts as latency
+    @Value("${benchmark.load.max-in-flight:256}")
+    private int maxInFlight = 256;
+
+    // NDJSON file of events (the /events/stream format) used instead of synthetic new events
+    @Value("${benchmark.load.replay-file:}")
+    private String replayFile = "";
+
+    @Value("${benchmark.load.report:target/load-report.json}")
+    private String reportPath = "target/load-report.json";
+
+    void run() throws Exception {
+        EventSource source = new EventSource(Long.toString(System.currentTimeMillis(), 36), loadReplay());
+        int[][] sizes = parseBatchSizes(batchSizes);
+        Sender sender = "http".equals(target) ? httpSender() : serviceSender();
+
+        log.info("Load: target={}, rates={} events/s, {} s per step after {} s warmup, batch sizes {}, {} machines",
+                target, eventsPerSecond, durationSeconds, warmupSeconds, batchSizes, machines);
+
+        if (warmupSeconds > 0) {
+            runStep(eventsPerSecond[0], warmupSeconds, sizes, source, sender);
+            log.info("Load: warmup done");
+        }
+        List<StepReport> steps = new ArrayList<>();
+        Integer saturationRate = null;
+        for (int rate : eventsPerSecond) {
+            StepReport step = runStep(rate, durationSeconds, sizes, source, sender);
+            steps.add(step);
+            log.info("Load step {} events/s: achieved {} events/s, latency p50 {} ms, p99 {} ms, p99.9 {} ms, max {} ms, "
+                            + "{} busy, {} failed{}",
+                    rate, String.format("%.0f", step.achievedEventsPerSecond()),
+                    step.latencyMs().get("p50"), step.latencyMs().get("p99"), step.latencyMs().get("p99.9"),
+                    step.latencyMs().get("max"), step.busyBatches(), step.failedBatches(),
+                    step.saturated() ? " (SATURATED)" : "");
+            if (step.saturated() && saturationRate == null) {
+                saturationRate = rate;
+            }
+        }
+        sender.close();
+
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("target", target);
+        config.put("eventsPerSecond", eventsPerSecond);
+        config.put("durationSeconds", durationSeconds);
+        config.put("warmupSeconds", warmupSeconds);
+        config.put("machines", machines);
+        config.put("batchSizes", batchSizes);
+        config.put("duplicateRatio", duplicateRatio);
+        config.put("updateRatio", updateRatio);
+        config.put("maxInFlight", maxInFlight);
+        config.put("replayFile", replayFile.isBlank() ? null : replayFile);
+
+        File report = new File(reportPath);
+        if (report.getParentFile() != null) {
+            report.getParentFile().mkdirs();
+        }
+        objectMapper.writerWithDefaultPrettyPrinter()
+                .writeValue(report, new LoadReport(Instant.now().toString(), config, saturationRate, steps));
+        log.info("Load: saturation at {} events/s, report written to {}",
+                saturationRate != null ? saturationRate : "none of the tested rates", report.getAbsolutePath());
+    }
+
+    private StepReport runStep(int rate, int seconds, int[][] sizes, EventSource source, Sender sender) throws Exception {
+        Recorder latency = new Recorder(3);
+        Recorder serviceTime = new Recorder(3);
+        Histogram latencyTotal = new Histogram(3);
+        Histogram serviceTotal = new Histogram(3);
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        Outcomes outcomes = new Outcomes();
+        List<IntervalReport> intervals = new ArrayList<>();
+        SplittableRandom random = new SplittableRandom(rate);
+
+        // one interval histogram per second; only this thread touches the totals until it stops
+        ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor();
+        AtomicLong lastCompleted = new AtomicLong();
+        ticker.scheduleAtFixedRate(() -> {
+            Histogram interval = latency.getIntervalHistogram();
+            latencyTotal.add(interval);
+            serviceTotal.add(serviceTime.getIntervalHistogram());
+            long completed = outcomes.completedEvents.sum();
+            intervals.add(new IntervalReport(intervals.size() + 1, completed - lastCompleted.getAndSet(completed),
+                    ms(interval.getValueAtPercentile(99)), ms(interval.getMaxValue())));
+        }, 1, 1, TimeUnit.SECONDS);
+
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        long intended = start;
+        long maxLagNs = 0;
+        while (intended < end) {
+            int size = pickBatchSize(sizes, random);
+            List<EventRequest> batch = source.next(size, random);
+
+            long now = System.nanoTime();
+            if (intended > now) {
+                LockSupport.parkNanos(intended - now);
+            }
+            inFlight.acquire();
+            long sent = System.nanoTime();
+            maxLagNs = Math.max(maxLagNs, sent - intended);
+            long intendedStart = intended;
+            outcomes.sentEvents.add(size);
+            sender.send(batch, (response, status) -> {
+                long done = System.nanoTime();
+                latency.recordValue(TimeUnit.NANOSECONDS.toMicros(done - intendedStart));
+                serviceTime.recordValue(TimeUnit.NANOSECONDS.toMicros(done - sent));
+                outcomes.record(size, response, status);
+                inFlight.release();
+            });
+            // open loop: the next start is fixed by the rate, not by when this batch returns
+            intended += size * 1_000_000_000L / rate;
+        }
+        inFlight.acquire(maxInFlight);
+        double elapsedSec = (System.nanoTime() - start) / 1_000_000_000.0;
+        ticker.shutdown();
+        ticker.awaitTermination(5, TimeUnit.SECONDS);
+        latencyTotal.add(latency.getIntervalHistogram());
+        serviceTotal.add(serviceTime.getIntervalHistogram());
+
+        double achieved = outcomes.completedEvents.sum() / elapsedSec;
+        boolean saturated = achieved < rate * SATURATION_RATE_RATIO || outcomes.busyBatches.sum() > 0;
+        return new StepReport(rate, round(elapsedSec), outcomes.batches.sum(), outcomes.sentEvents.sum(), round(achieved),
+                outcomes.accepted.sum(), outcomes.deduped.sum(), outcomes.collapsed.sum(), outcomes.updated.sum(),
+                outcomes.rejected.sum(), outcomes.busyBatches.sum(), outcomes.failedBatches.sum(),
+                ms(maxLagNs / 1000), percentiles(latencyTotal), percentiles(serviceTotal), saturated, intervals);
+    }
+
+    private static Map<String, Double> percentiles(Histogram h) {
+        Map<String, Double> p = new LinkedHashMap<>();
+        p.put("p50", ms(h.getValueAtPercentile(50)));
+        p.put("p90", ms(h.getValueAtPercentile(90)));
+        p.put("p99", ms(h.getValueAtPercentile(99)));
+        p.put("p99.9", ms(h.getValueAtPercentile(99.9)));
+        p.put("max", ms(h.getMaxValue()));
+        p.put("mean", round(h.getMean() / 1000.0));
+        return p;
+    }
+
+    private static double ms(long micros) {
+        return round(micros / 1000.0);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000.0) / 1000.0;
+    }
+
+    // {size, cumulative weight} pairs
+    static int[][] parseBatchSizes(String spec) {
+        String[] parts = spec.split(",");
+        int[][] sizes = new int[parts.length][2];
+        int total = 0;
+        for (int i = 0; i < parts.length; i++) {
+            String[] sizeWeight = parts[i].trim().split(":");
+            sizes[i][0] = Integer.parseInt(sizeWeight[0].trim());
+            total += sizeWeight.length > 1 ? Integer.parseInt(sizeWeight[1].trim()) : 1;
+            sizes[i][1] = total;
+            if (sizes[i][0] < 1) {
+                throw new IllegalArgumentException("batch size must be at least 1: " + parts[i]);
+            }
+        }
+        return sizes;
+    }
+
+    private static int pickBatchSize(int[][] sizes, SplittableRandom random) {
+        int roll = random.nextInt(sizes[sizes.length - 1][1]);
+        for (int[] size : sizes) {
+            if (roll < size[1]) {
+                return size[0];
+            }
+        }
+        return sizes[sizes.length - 1][0];
+    }
+
+    private List<EventRequest> loadReplay() throws IOException {
+        if (replayFile.isBlank()) {
+            return List.of();
+        }
+        List<EventRequest> events = new ArrayList<>();
+        try (MappingIterator<EventRequest> it = objectMapper.readerFor(EventRequest.class).readValues(new File(replayFile))) {
+            while (it.hasNext()) {
+                events.add(it.next());
+            }
+        }
+        if (events.isEmpty()) {
+            throw new IllegalArgumentException("benchmark.load.replay-file has no events: " + replayFile);
+        }
+        log.info("Load: replaying {} events from {}", events.size(), replayFile);
+        return events;
+    }
+
+    /**
+     * New events (synthetic, or the replay file in a loop), exact resends and changed
+     * payloads of recently sent events, mixed by the configured ratios. Only used by the
+     * scheduling thread.
+     */
+    private class EventSource {
+        private final String runId;
+        private final List<EventRequest> replay;
+        private final EventRequest[] history = new EventRequest[HISTORY_SIZE];
+        private long sequence;
+
+        EventSource(String runId, List<EventRequest> replay) {
+            this.runId = runId;
+            this.replay = replay;
+        }
+
+        List<EventRequest> next(int size, SplittableRandom random) {
+            List<EventRequest> batch = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                batch.add(nextEvent(random));
+            }
+            return batch;
+        }
+
+        private EventRequest nextEvent(SplittableRandom random) {
+            double roll = random.nextDouble();
+            if (sequence > 0 && roll < duplicateRatio + updateRatio) {
+                int slot = (int) random.nextLong(Math.min(sequence, HISTORY_SIZE));
+                EventRequest previous = history[slot];
+                if (roll < duplicateRatio) {
+                    return previous;
+                }
+                EventRequest changed = new EventRequest(previous.eventId(), previous.eventTime(), previous.machineId(),
+                        previous.durationMs(), previous.defectCount() + 1, previous.factoryId(), previous.lineId());
+                history[slot] = changed;
+                return changed;
+            }
+            EventRequest event = replay.isEmpty() ? synthetic(random) : replay.get((int) (sequence % replay.size()));
+            history[(int) (sequence % HISTORY_SIZE)] = event;
+            sequence++;
+            return event;
+        }
+
+        private EventRequest synthetic(SplittableRandom random) {
+            int machine = random.nextInt(machines);
+            return new EventRequest(
+                    "LOAD-" + runId + "-" + sequence,
+                    Instant.now().minusSeconds(random.nextInt(3600)),
+                    "LOAD-M-" + machine,
+                    1000L + random.nextInt(5000),
+                    random.nextInt(5),
+                    "LOAD-F" + (machine % 4),
+                    "L" + (machine % 8));
+        }
+    }
+
+    private static class Outcomes {
+        final LongAdder batches = new LongAdder();
+        final LongAdder sentEvents = new LongAdder();
+        final LongAdder completedEvents = new LongAdder();
+        final LongAdder accepted = new LongAdder();
+        final LongAdder deduped = new LongAdder();
+        final LongAdder collapsed = new LongAdder();
+        final LongAdder updated = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+        final LongAdder busyBatches = new LongAdder();
+        final LongAdder failedBatches = new LongAdder();
+
+        void record(int size, BatchResponse response, int status) {
+            batches.increment();
+            if (response != null) {
+                completedEvents.add(size);
+                accepted.add(response.getAccepted());
+                deduped.add(response.getDeduped());
+                collapsed.add(response.getCollapsed());
+                updated.add(response.getUpdated());
+                rejected.add(response.getRejected());
+            } else if (status == 429 || status == 503) {
+                busyBatches.increment();
+            } else {
+                failedBatches.increment();
+            }
+        }
+    }
+
+    private interface Completion {
+        // response is null when the batch failed; status is the HTTP status, or 200 / -1 in process
+        void done(BatchResponse response, int status);
+    }
+
+    private interface Sender extends AutoCloseable {
+        void send(List<EventRequest> batch, Completion completion);
+
+        @Override
+        void close();
+    }
+
+    private Sender serviceSender() {
+        ExecutorService executor = Executors.newFixedThreadPool(maxInFlight);
+        return new Sender() {
+            @Override
+            public void send(List<EventRequest> batch, Completion completion) {
+                executor.execute(() -> {
+                    BatchResponse response = null;
+                    try {
+                        response = eventService.processBatchEvents(batch);
+                    } catch (RuntimeException e) {
+                        log.debug("Load batch failed", e);
+                    }
+                    completion.done(response, response != null ? 200 : -1);
+                });
+            }
+
+            @Override
+            public void close() {
+                executor.shutdown();
+            }
+        };
+    }
+
+    private Sender httpSender() {
+        URI batchUri = URI.create("http://localhost:" + environment.getProperty("local.server.port", "8092")
+                + "/api/v1/events/batch");
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(executor)
+                .build();
+        return new Sender() {
+            @Override
+            public void send(List<EventRequest> batch, Completion completion) {
+                HttpRequest request;
+                try {
+                    request = HttpRequest.newBuilder(batchUri)
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(batch)))
+                            .build();
+                } catch (IOException e) {
+                    completion.done(null, -1);
+                    return;
+                }
+                client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                        .whenComplete((response, error) -> {
+                            BatchResponse body = null;
+                            if (response != null && response.statusCode() == 200) {
+                                try {
+                                    body = objectMapper.readValue(response.body(), BatchResponse.class);
+                                } catch (IOException e) {
+                                    log.debug("Unreadable batch response", e);
+                                }
+                            }
+                            completion.done(body, response != null ? response.statusCode() : -1);
+                        });
+            }
+
+            @Override
+            public void close() {
+                executor.shutdown();
+            }
+        };
+    }
+
+    record LoadReport(String finishedAt, Map<String, Object> config, Integer saturationEventsPerSecond,
+                      List<StepReport> steps) {
+    }
+
+    record StepReport(int targetEventsPerSecond, double elapsedSeconds, long batches, long sentEvents,
+                      double achievedEventsPerSecond, long accepted, long deduped, long collapsed, long updated,
+                      long rejected, long busyBatches, long failedBatches, double maxDispatchLagMs,
+                      Map<String, Double> latencyMs, Map<String, Double> serviceTimeMs, boolean saturated,
+                      List<IntervalReport> intervals) {
+    }
+
+    record IntervalReport(int second, long completedEvents, double latencyP99Ms, double latencyMaxMs) {
+    }
+}
@@ -0,0 +1,90 @@
+package com.assignment.buyogo_backend_assignment.config;
+
+import com.assignment.buyogo_backend_assignment.exception.ServerBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps the number of API requests being processed at once, by default at the Hikari pool
+ * size. With virtual threads Tomcat no longer bounds concurrency, so without this every
+ * request of a burst would start and then park waiting for a connection (and time out in
+ * Hikari after 30s). Requests wait up to wait-timeout-ms for a slot, then get 503.
+ * An async request holds its slot until its last dispatch completes.
+ */
+@Component
+@RequiredArgsConstructor
+public class AdmissionLimiter implements HandlerInterceptor {
+
+    private static final String ADMITTED = AdmissionLimiter.class.getName() + ".admitted";
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${events.admission.enabled:false}")
+    private boolean enabled = false;
+
+    @Value("${events.admission.max-concurrent:${spring.datasource.hikari.maximum-pool-size:10}}")
+    private int maxConcurrent = 10;
+
+    @Value("${events.admission.wait-timeout-ms:2000}")
+    private long waitTimeoutMs = 2000;
+
+    private Semaphore permits;
+    private Counter rejectedRequests;
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            return;
+        }
+        // fair, so a burst is served in arrival order instead of starving early requests
+        permits = new Semaphore(maxConcurrent, true);
+        rejectedRequests = Counter.builder("events.admission.rejected")
+                .description("API requests turned away because no slot freed up within the wait timeout")
+                .register(meterRegistry);
+        Gauge.builder("events.admission.active", () -> maxConcurrent - permits.availablePermits())
+                .description("API requests currently being processed")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // a streamed response (/stats/machines) is finished on a second, ASYNC dispatch that runs
+        // preHandle again but afterCompletion only once; it keeps the slot of the first dispatch
+        if (!enabled || request.getDispatcherType() == DispatcherType.ASYNC || request.getAttribute(ADMITTED) != null) {
+            return true;
+        }
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            rejectedRequests.increment();
+            throw new ServerBusyException("Server is busy, retry later");
+        }
+        request.setAttribute(ADMITTED, Boolean.TRUE);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(ADMITTED) != null) {
+            request.removeAttribute(ADMITTED);
+            permits.release();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.assignment.buyogo_backend_assignment.config;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+@RequiredArgsConstructor
+public class WebConfig implements WebMvcConfigurer {
+
+    private final AdmissionLimiter admissionLimiter;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(admissionLimiter).addPathPatterns("/api/**");
+    }
+
+    /**
+     * Smile (application/x-jackson-smile) and CBOR (application/cbor) bodies, decoded into the
+     * same EventRequest list as JSON. JSON stays first, so responses are JSON unless the client
+     * asks otherwise. In the binary formats an integer eventTime is epoch milliseconds, which
+     * skips ISO-8601 parsing; strings are still accepted.
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.removeIf(c -> c instanceof MappingJackson2SmileHttpMessageConverter
+                || c instanceof MappingJackson2CborHttpMessageConverter);
+        converters.add(new MappingJackson2SmileHttpMessageConverter(epochMillis(Jackson2ObjectMapperBuilder.smile())));
+        converters.add(new MappingJackson2CborHttpMessageConverter(epochMillis(Jackson2ObjectMapperBuilder.cbor())));
+    }
+
+    private static ObjectMapper epochMillis(Jackson2ObjectMapperBuilder builder) {
+        return builder.featuresToDisable(DeserializationFeature.READ_DATE_TIMESTAMPS_AS_NANOSECONDS).build();
+    }
+}
@@ -3,14 +3,17 @@ package com.assignment.buyogo_backend_assignment.controller;
 import com.assignment.buyogo_backend_assignment.request.EventRequest;
 import com.assignment.buyogo_backend_assignment.response.BatchResponse;
 import com.assignment.buyogo_backend_assignment.service.EventService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.AllArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
 import java.util.List;
 
 @RestController
@@ -26,4 +29,11 @@ public class EventController {
         BatchResponse response= eventService.processBatchEvents(eventRequestList);
         return ResponseEntity.ok(response);
     }
+
+    // one JSON event per line, parsed and upserted in chunks while the body is still arriving
+    @PostMapping(value = "/stream", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    ResponseEntity<BatchResponse> processStream(HttpServletRequest request) throws IOException {
+        BatchResponse response= eventService.processEventStream(request.getInputStream());
+        return ResponseEntity.ok(response);
+    }
 }
@@ -1,20 +1,27 @@
 package com.assignment.buyogo_backend_assignment.controller;
 
+import com.assignment.buyogo_backend_assignment.request.DefectLineRanking;
+import com.assignment.buyogo_backend_assignment.request.MachineStatsRequest;
 import com.assignment.buyogo_backend_assignment.request.StatsRequest;
 import com.assignment.buyogo_backend_assignment.response.DefectLineResponse;
 import com.assignment.buyogo_backend_assignment.response.StatsResponse;
 import com.assignment.buyogo_backend_assignment.service.StatsService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.Instant;
 import java.util.List;
 
@@ -23,6 +30,7 @@ import java.util.List;
 @AllArgsConstructor
 public class StatsController {
     private final StatsService statsService;
+    private final ObjectMapper objectMapper;
 
     @GetMapping()
     public ResponseEntity<StatsResponse> getStats(
@@ -48,9 +56,41 @@ public class StatsController {
             @RequestParam @NotNull(message = "end event time is required")
             @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
 
-            @RequestParam(defaultValue = "10") int limit
+            @RequestParam(defaultValue = "10") int limit,
+            // defects (total defect count) or percent (defects per event)
+            @RequestParam(defaultValue = "defects") String rankBy
     ) {
-        List<DefectLineResponse> topLines = statsService.getDefectsLine(factoryId, from, to, limit);
+        List<DefectLineResponse> topLines = statsService.getDefectsLine(
+                factoryId, from, to, limit, DefectLineRanking.from(rankBy));
         return ResponseEntity.ok(topLines);
     }
+
+    /**
+     * Stats of many machines in one query, either the listed machineIds (repeated or
+     * comma-separated) or every machine with events of factoryId in the window. Written as
+     * newline-delimited JSON, one StatsResponse per line, while the rows are read.
+     */
+    @GetMapping("/machines")
+    public ResponseEntity<StreamingResponseBody> getMachineStats(
+            @RequestParam(required = false) List<String> machineIds,
+            @RequestParam(required = false) String factoryId,
+            @RequestParam @NotNull(message = "start event time is required")
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant start,
+            @RequestParam @NotNull(message = "end event time is required")
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant end
+    ) {
+        // validated here, before the body starts, so a bad request is still a 400
+        MachineStatsRequest request = new MachineStatsRequest(machineIds, factoryId, start, end);
+        StreamingResponseBody body = out -> statsService.streamMachineStats(request, stats -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(stats));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
 }
@@ -1,26 +1,30 @@
 package com.assignment.buyogo_backend_assignment.entity;
 
 import jakarta.persistence.*;
-import lombok.AllArgsConstructor;
-import lombok.Builder;
-import lombok.Data;
+import lombok.AccessLevel;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Formula;
+import org.hibernate.annotations.Immutable;
 
 import java.time.Instant;
 
+/**
+ * Read-only view of a stored event. Rows are only written by EventBulkRepository through
+ * ingest_events, which also keeps event_keys and the hourly rollups in step, so the entity
+ * is never persisted or updated through JPA.
+ */
 @Entity
-@AllArgsConstructor
-@NoArgsConstructor
-@Builder
-@Data
+@Immutable
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
 @Table(name = "events")
 public class Event {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Column(name = "event_id", unique = true, nullable = false)
+    @Column(name = "event_id", nullable = false)
     private String eventId;
 
     @Column(name = "event_time", nullable = false)
@@ -29,7 +33,9 @@ public class Event {
     @Column(name = "received_time", nullable = false)
     private Instant receivedTime;
 
-    @Column(name = "machine_id", nullable = false)
+    // machine, factory and line are stored as dictionary keys (V5 migration) and written by
+    // EventBulkRepository; the entity reads the identifiers back through the dictionaries
+    @Formula("(SELECT m.machine_id FROM machines m WHERE m.machine_key = machine_key)")
     private String machineId;
 
     @Column(name = "duration_ms", nullable = false)
@@ -38,10 +44,10 @@ public class Event {
     @Column(name = "defect_count", nullable = false)
     private Integer defectCount;
 
-    @Column(name = "factory_id")
+    @Formula("(SELECT f.factory_id FROM factories f WHERE f.factory_key = factory_key)")
     private String factoryId;
 
-    @Column(name = "line_id")
+    @Formula("(SELECT l.line_id FROM lines l WHERE l.line_key = line_key)")
     private String lineId;
 
     @Column(name = "payload_hash", nullable = false)
@@ -52,15 +58,4 @@ public class Event {
 
     @Column(name = "updated_at")
     private Instant updatedAt;
-
-    @PrePersist
-    protected void onCreate() {
-        createdAt = Instant.now();
-        updatedAt = Instant.now();
-    }
-
-    @PreUpdate
-    protected void onUpdate() {
-        updatedAt = Instant.now();
-    }
 }
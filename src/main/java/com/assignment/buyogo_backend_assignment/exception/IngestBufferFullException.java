@@ -0,0 +1,7 @@
+package com.assignment.buyogo_backend_assignment.exception;
+
+public class IngestBufferFullException extends RuntimeException {
+    public IngestBufferFullException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,49 @@
+package com.assignment.buyogo_backend_assignment.repository;
+
+/**
+ * Picks the size of the next upsert chunk so that one chunk takes about targetChunkNanos.
+ * The cost per event is a moving average over the chunks of all requests, so a single slow
+ * chunk (a checkpoint, a lock wait) only moves the size part of the way. Concurrent updates
+ * may overwrite each other; that loses a sample, not correctness.
+ */
+class AdaptiveChunkSizer {
+
+    private static final double SMOOTHING = 0.2;
+
+    private final int minSize;
+    private final int maxSize;
+    private final long targetChunkNanos;
+
+    // 0 until the first chunk has been timed
+    private volatile double nanosPerEvent;
+    private volatile int size;
+
+    AdaptiveChunkSizer(int initialSize, int minSize, int maxSize, long targetChunkNanos) {
+        if (minSize < 1 || maxSize < minSize) {
+            throw new IllegalArgumentException("chunk sizes must satisfy 1 <= min-size <= max-size");
+        }
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.targetChunkNanos = targetChunkNanos;
+        this.size = clamp(initialSize);
+    }
+
+    int size() {
+        return size;
+    }
+
+    void record(int events, long nanos) {
+        if (events <= 0) {
+            return;
+        }
+        double sample = (double) nanos / events;
+        double previous = nanosPerEvent;
+        double average = previous == 0 ? sample : previous + SMOOTHING * (sample - previous);
+        nanosPerEvent = average;
+        size = clamp((long) (targetChunkNanos / Math.max(average, 1.0)));
+    }
+
+    private int clamp(long value) {
+        return (int) Math.max(minSize, Math.min(maxSize, value));
+    }
+}
@@ -0,0 +1,15 @@
+package com.assignment.buyogo_backend_assignment.repository;
+
+/**
+ * One row of the top-defect-lines ranking. defectsPercent is already rounded like the API
+ * returns it (defects / events, 4 decimals, times 100).
+ */
+public interface DefectLineTotals {
+    String getLineId();
+
+    long getTotalDefects();
+
+    long getEventCount();
+
+    double getDefectsPercent();
+}
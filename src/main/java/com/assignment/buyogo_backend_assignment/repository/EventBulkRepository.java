@@ -1,62 +1,528 @@
 package com.assignment.buyogo_backend_assignment.repository;
 
-import com.assignment.buyogo_backend_assignment.entity.Event;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
-import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
+@Slf4j
 @Repository
 @RequiredArgsConstructor
 public class EventBulkRepository {
 
-    private final JdbcTemplate jdbcTemplate;
+    // whole batch as 9 arrays -> one call, one round trip. ingest_events (V5 migration) claims
+    // the ids in event_keys with ON CONFLICT (event_id), keeps the last copy of an id sent twice,
+    // and writes the event rows into their day partitions. Machine, factory and line are passed
+    // as dictionary keys. Returns (event_id, inserted).
+    private static final String UPSERT_ARRAYS_SQL = """
+            SELECT event_id, inserted
+            FROM ingest_events(?::varchar[], ?::timestamptz[], ?::timestamptz[], ?::integer[], ?::bigint[], ?::integer[], ?::integer[], ?::integer[], ?::varchar[])
+        """;
 
-    // returns array of update counts
-    public int[] bulkUpsert(List<Event> events) {
-        String sql = """
-            INSERT INTO events(event_id, event_time, received_time, machine_id, duration_ms, defect_count, factory_id, line_id, payload_hash)
-            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
-            ON CONFLICT (event_id)
-            DO UPDATE SET
-                event_time = EXCLUDED.event_time,
-                received_time = EXCLUDED.received_time,
-                machine_id = EXCLUDED.machine_id,
-                duration_ms = EXCLUDED.duration_ms,
-                defect_count = EXCLUDED.defect_count,
-                factory_id = EXCLUDED.factory_id,
-                line_id = EXCLUDED.line_id,
-                payload_hash = EXCLUDED.payload_hash
-            WHERE
-                events.payload_hash <> EXCLUDED.payload_hash
-                AND EXCLUDED.received_time > events.received_time
+    // temp tables are never WAL-logged; rows are wiped at commit, the table lives as long as the pooled connection
+    private static final String PREPARE_STAGING_SQL = """
+            CREATE TEMP TABLE IF NOT EXISTS events_staging (
+                ord integer NOT NULL,
+                event_id varchar(255) NOT NULL,
+                event_time timestamptz NOT NULL,
+                received_time timestamptz NOT NULL,
+                machine_key integer NOT NULL,
+                duration_ms bigint NOT NULL,
+                defect_count integer NOT NULL,
+                factory_key integer,
+                line_key integer,
+                payload_hash varchar(255) NOT NULL
+            ) ON COMMIT DELETE ROWS;
+            TRUNCATE events_staging
         """;
 
-        return jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
-            @Override
-            public void setValues(PreparedStatement ps, int i) throws SQLException {
-                Event e = events.get(i);
-                ps.setString(1, e.getEventId());
-                ps.setTimestamp(2, Timestamp.from(e.getEventTime()));
-                ps.setTimestamp(3, Timestamp.from(e.getReceivedTime()));
-                ps.setString(4, e.getMachineId());
-                ps.setLong(5, e.getDurationMs());
-                ps.setInt(6, e.getDefectCount());
-                ps.setString(7, e.getFactoryId());
-                ps.setString(8, e.getLineId());
-                ps.setString(9, e.getPayloadHash());
-            }
-
-            @Override
-            public int getBatchSize() {
-                return events.size();
+    private static final String COPY_SQL = """
+            COPY events_staging(ord, event_id, event_time, received_time, machine_key, duration_ms, defect_count, factory_key, line_key, payload_hash)
+            FROM STDIN (FORMAT binary)
+        """;
+
+    private static final String MERGE_STAGING_SQL = """
+            SELECT r.event_id, r.inserted
+            FROM (
+                SELECT array_agg(event_id ORDER BY ord) AS event_ids,
+                       array_agg(event_time ORDER BY ord) AS event_times,
+                       array_agg(received_time ORDER BY ord) AS received_times,
+                       array_agg(machine_key ORDER BY ord) AS machine_keys,
+                       array_agg(duration_ms ORDER BY ord) AS durations,
+                       array_agg(defect_count ORDER BY ord) AS defect_counts,
+                       array_agg(factory_key ORDER BY ord) AS factory_keys,
+                       array_agg(line_key ORDER BY ord) AS line_keys,
+                       array_agg(payload_hash ORDER BY ord) AS payload_hashes
+                FROM events_staging
+            ) s
+            CROSS JOIN LATERAL ingest_events(s.event_ids, s.event_times, s.received_times, s.machine_keys, s.durations,
+                                             s.defect_counts, s.factory_keys, s.line_keys, s.payload_hashes) r
+        """;
+
+    private static final int COPY_FIELD_COUNT = 10;
+    private static final int COPY_BUFFER_BYTES = 64 * 1024;
+
+    private static final String SQLSTATE_SERIALIZATION_FAILURE = "40001";
+    private static final String SQLSTATE_DEADLOCK_DETECTED = "40P01";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final IdentifierDictionary identifierDictionary;
+
+    // batches of this size or larger go through COPY, 0 disables the COPY path
+    @Value("${events.ingest.copy-threshold:2000}")
+    private int copyThreshold = 2000;
+
+    // attempts per batch when Postgres aborts it with a deadlock / serialization failure (1 = no retry)
+    @Value("${events.ingest.retry.max-attempts:4}")
+    private int retryMaxAttempts = 4;
+
+    // full jitter: sleep a random time up to min(max-backoff, base * 2^retry)
+    @Value("${events.ingest.retry.base-backoff-ms:10}")
+    private long retryBaseBackoffMs = 10;
+
+    @Value("${events.ingest.retry.max-backoff-ms:200}")
+    private long retryMaxBackoffMs = 200;
+
+    // batches larger than the adaptive chunk size are written in chunks of about target-chunk-ms each
+    @Value("${events.ingest.chunking.enabled:false}")
+    private boolean chunkingEnabled = false;
+
+    @Value("${events.ingest.chunking.target-chunk-ms:200}")
+    private long targetChunkMs = 200;
+
+    @Value("${events.ingest.chunking.initial-size:5000}")
+    private int initialChunkSize = 5000;
+
+    @Value("${events.ingest.chunking.min-size:500}")
+    private int minChunkSize = 500;
+
+    @Value("${events.ingest.chunking.max-size:20000}")
+    private int maxChunkSize = 20000;
+
+    // each chunk commits on its own and a failed chunk does not fail the others
+    @Value("${events.ingest.chunking.commit-per-chunk:true}")
+    private boolean commitPerChunk = true;
+
+    // null when chunking is off
+    private AdaptiveChunkSizer chunkSizer;
+
+    private Counter deadlockRetries;
+    private Counter serializationRetries;
+    private Counter retriesExhausted;
+    private Timer arraysUpsertTimer;
+    private Timer copyUpsertTimer;
+    private Timer copyChunksUpsertTimer;
+    private Counter failedChunks;
+
+    @PostConstruct
+    void registerMetrics() {
+        deadlockRetries = Counter.builder("events.ingest.upsert.retries")
+                .description("Batch upserts retried after Postgres aborted them")
+                .tag("reason", "deadlock")
+                .register(meterRegistry);
+        serializationRetries = Counter.builder("events.ingest.upsert.retries")
+                .description("Batch upserts retried after Postgres aborted them")
+                .tag("reason", "serialization")
+                .register(meterRegistry);
+        retriesExhausted = Counter.builder("events.ingest.upsert.retries.exhausted")
+                .description("Batch upserts that still failed after the last retry")
+                .register(meterRegistry);
+        arraysUpsertTimer = upsertTimer("arrays");
+        copyUpsertTimer = upsertTimer("copy");
+        copyChunksUpsertTimer = upsertTimer("copy-chunks");
+
+        if (chunkingEnabled) {
+            chunkSizer = new AdaptiveChunkSizer(initialChunkSize, minChunkSize, maxChunkSize,
+                    TimeUnit.MILLISECONDS.toNanos(targetChunkMs));
+            Gauge.builder("events.ingest.upsert.chunk-size", chunkSizer, AdaptiveChunkSizer::size)
+                    .description("Events per chunk the next chunked upsert will use")
+                    .register(meterRegistry);
+            failedChunks = Counter.builder("events.ingest.upsert.chunks.failed")
+                    .description("Upsert chunks that failed and were reported as FAILED")
+                    .register(meterRegistry);
+        }
+    }
+
+    private Timer upsertTimer(String path) {
+        return Timer.builder("events.ingest.upsert")
+                .description("Time of one batch upsert, retries included")
+                .tag("path", path)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(100_000))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(meterRegistry);
+    }
+
+    public boolean isChunkingEnabled() {
+        return chunkSizer != null;
+    }
+
+    /**
+     * Upserts the batch and returns what happened to each row, in request order.
+     * The outcome comes from the write itself (ingest_events result), so no prefetch is needed
+     * and counts stay exact when concurrent batches touch the same ids.
+     */
+    public UpsertOutcome[] bulkUpsert(List<EventRow> events) {
+        if (chunkSizer == null) {
+            return upsertBatch(events);
+        }
+        int chunkSize = chunkSizer.size();
+        if (events.size() <= chunkSize) {
+            long start = System.nanoTime();
+            UpsertOutcome[] outcomes = upsertBatch(events);
+            chunkSizer.record(events.size(), System.nanoTime() - start);
+            return outcomes;
+        }
+        if (commitPerChunk && !TransactionSynchronizationManager.isActualTransactionActive()) {
+            return upsertChunksCommitted(events);
+        }
+        return withRetry(() -> transactionTemplate.execute(status -> upsertChunksInOneTransaction(events)));
+    }
+
+    /**
+     * Each chunk is its own upsert and transaction (with its own retries), so row locks are
+     * held for one chunk and WAL is written in chunk-sized bursts. A chunk that still fails
+     * is rolled back alone and its rows are reported as FAILED; the error is only thrown when
+     * every chunk failed. Repeated ids in different chunks are no longer collapsed by the
+     * merge: the later copy is applied as an update of the earlier one.
+     */
+    private UpsertOutcome[] upsertChunksCommitted(List<EventRow> events) {
+        UpsertOutcome[] outcomes = new UpsertOutcome[events.size()];
+        RuntimeException failure = null;
+        int chunks = 0;
+        int failed = 0;
+        for (int from = 0; from < events.size(); ) {
+            int to = Math.min(from + chunkSizer.size(), events.size());
+            List<EventRow> chunk = events.subList(from, to);
+            chunks++;
+            long start = System.nanoTime();
+            try {
+                System.arraycopy(upsertBatch(chunk), 0, outcomes, from, chunk.size());
+                chunkSizer.record(chunk.size(), System.nanoTime() - start);
+            } catch (RuntimeException e) {
+                failure = e;
+                failed++;
+                failedChunks.increment();
+                log.warn("Upsert of events {}..{} of a {}-event batch failed, other chunks are kept", from, to - 1, events.size(), e);
+                Arrays.fill(outcomes, from, to, UpsertOutcome.FAILED);
+            }
+            from = to;
+        }
+        if (failed == chunks) {
+            throw failure;
+        }
+        return outcomes;
+    }
+
+    // chunks bound the size of each statement, the batch stays all or nothing
+    private UpsertOutcome[] upsertChunksInOneTransaction(List<EventRow> events) {
+        UpsertOutcome[] outcomes = new UpsertOutcome[events.size()];
+        for (int from = 0; from < events.size(); ) {
+            int to = Math.min(from + chunkSizer.size(), events.size());
+            List<EventRow> chunk = events.subList(from, to);
+            long start = System.nanoTime();
+            UpsertOutcome[] chunkOutcomes = copyThreshold > 0 && chunk.size() >= copyThreshold
+                    ? bulkUpsertCopy(chunk)
+                    : bulkUpsertArrays(chunk);
+            chunkSizer.record(chunk.size(), System.nanoTime() - start);
+            System.arraycopy(chunkOutcomes, 0, outcomes, from, chunk.size());
+            from = to;
+        }
+        return outcomes;
+    }
+
+    private UpsertOutcome[] upsertBatch(List<EventRow> events) {
+        long start = System.nanoTime();
+        if (copyThreshold > 0 && events.size() >= copyThreshold) {
+            // staging rows only live until commit, so COPY + merge need one transaction
+            UpsertOutcome[] outcomes = withRetry(() -> transactionTemplate.execute(status -> bulkUpsertCopy(events)));
+            copyUpsertTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return outcomes;
+        }
+        UpsertOutcome[] outcomes = withRetry(() -> bulkUpsertArrays(events));
+        arraysUpsertTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return outcomes;
+    }
+
+    /**
+     * Single ingest_events(arrays) call, after resolving the batch's dictionary keys.
+     */
+    public UpsertOutcome[] bulkUpsertArrays(List<EventRow> events) {
+        return jdbcTemplate.execute((ConnectionCallback<UpsertOutcome[]>) con -> {
+            IdentifierDictionary.Keys keys = identifierDictionary.resolve(con, events);
+            int n = events.size();
+            String[] eventIds = new String[n];
+            Timestamp[] eventTimes = new Timestamp[n];
+            Timestamp[] receivedTimes = new Timestamp[n];
+            long[] durations = new long[n];
+            int[] defectCounts = new int[n];
+            String[] payloadHashes = new String[n];
+
+            Instant lastReceived = null;
+            for (int i = 0; i < n; i++) {
+                EventRow e = events.get(i);
+                eventIds[i] = e.eventId();
+                eventTimes[i] = Timestamp.from(e.eventTime());
+                // a batch shares one receivedTime, so its Timestamp is only built once
+                if (e.receivedTime() != lastReceived) {
+                    lastReceived = e.receivedTime();
+                    receivedTimes[i] = Timestamp.from(lastReceived);
+                } else {
+                    receivedTimes[i] = receivedTimes[i - 1];
+                }
+                durations[i] = e.durationMs();
+                defectCounts[i] = e.defectCount();
+                payloadHashes[i] = e.payloadHash();
+            }
+
+            // PGConnection.createArrayOf also takes primitive arrays
+            PGConnection pg = con.unwrap(PGConnection.class);
+            try (PreparedStatement ps = con.prepareStatement(UPSERT_ARRAYS_SQL)) {
+                ps.setArray(1, con.createArrayOf("varchar", eventIds));
+                ps.setArray(2, con.createArrayOf("timestamptz", eventTimes));
+                ps.setArray(3, con.createArrayOf("timestamptz", receivedTimes));
+                ps.setArray(4, con.createArrayOf("int4", keys.machine()));
+                ps.setArray(5, pg.createArrayOf("int8", durations));
+                ps.setArray(6, pg.createArrayOf("int4", defectCounts));
+                ps.setArray(7, con.createArrayOf("int4", keys.factory()));
+                ps.setArray(8, con.createArrayOf("int4", keys.line()));
+                ps.setArray(9, con.createArrayOf("varchar", payloadHashes));
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    return toOutcomes(events, rs);
+                }
+            }
+        });
+    }
+
+    /**
+     * Streams the batch with binary COPY into a temp staging table, then merges it into
+     * events with one set-based ingest_events call over the staged rows.
+     * Must run inside a transaction (the staging table is emptied at commit).
+     */
+    @Transactional
+    public UpsertOutcome[] bulkUpsertCopy(List<EventRow> events) {
+        return copyAndMerge(List.of(events).iterator(), events.size());
+    }
+
+    /**
+     * Same as bulkUpsertCopy for a batch that arrives in chunks: each chunk is copied as
+     * soon as the iterator hands it over, so the caller can still be preparing later chunks
+     * while earlier ones are on the wire. The iterator may block. Still one transaction and
+     * one merge, and the outcomes cover all chunks in order.
+     */
+    public UpsertOutcome[] bulkUpsertCopyChunks(Iterator<List<EventRow>> chunks, int expectedSize) {
+        long start = System.nanoTime();
+        // a retry replays the chunks already taken before continuing with the iterator
+        List<List<EventRow>> taken = new ArrayList<>();
+        UpsertOutcome[] outcomes = withRetry(() -> {
+            Iterator<List<EventRow>> replay = List.copyOf(taken).iterator();
+            Iterator<List<EventRow>> attempt = new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return replay.hasNext() || chunks.hasNext();
+                }
+
+                @Override
+                public List<EventRow> next() {
+                    if (replay.hasNext()) {
+                        return replay.next();
+                    }
+                    List<EventRow> chunk = chunks.next();
+                    taken.add(chunk);
+                    return chunk;
+                }
+            };
+            return transactionTemplate.execute(status -> copyAndMerge(attempt, expectedSize));
+        });
+        // includes waiting for chunks that were still being prepared
+        copyChunksUpsertTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return outcomes;
+    }
+
+    /**
+     * Runs the write again when Postgres picked it as a deadlock victim or hit a serialization
+     * failure. The whole statement / transaction was rolled back, so running it again is safe
+     * and returns exact outcomes. ingest_events locks keys and rollup rows in key order, but
+     * its insert and update steps lock rollup rows separately, so two overlapping batches can
+     * still deadlock there.
+     */
+    private UpsertOutcome[] withRetry(Supplier<UpsertOutcome[]> write) {
+        // inside a caller's transaction the abort already rolled back the caller's work too
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return write.get();
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return write.get();
+            } catch (RuntimeException e) {
+                String sqlState = abortSqlState(e);
+                if (sqlState == null) {
+                    throw e;
+                }
+                if (attempt >= retryMaxAttempts) {
+                    retriesExhausted.increment();
+                    throw e;
+                }
+                (SQLSTATE_DEADLOCK_DETECTED.equals(sqlState) ? deadlockRetries : serializationRetries).increment();
+                long backoffMs = Math.min(retryMaxBackoffMs, retryBaseBackoffMs << Math.min(attempt - 1, 20));
+                long sleepMs = ThreadLocalRandom.current().nextLong(backoffMs + 1);
+                log.debug("Batch upsert aborted with SQLSTATE {}, retry {} in {} ms", sqlState, attempt, sleepMs);
+                try {
+                    TimeUnit.MILLISECONDS.sleep(sleepMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    // 40P01 or 40001 anywhere in the cause chain, null for any other failure
+    private static String abortSqlState(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException sql) {
+                String state = sql.getSQLState();
+                if (SQLSTATE_DEADLOCK_DETECTED.equals(state) || SQLSTATE_SERIALIZATION_FAILURE.equals(state)) {
+                    return state;
+                }
+            }
+        }
+        return null;
+    }
+
+    private UpsertOutcome[] copyAndMerge(Iterator<List<EventRow>> chunks, int expectedSize) {
+        return jdbcTemplate.execute((ConnectionCallback<UpsertOutcome[]>) con -> {
+            try (Statement statement = con.createStatement()) {
+                statement.execute(PREPARE_STAGING_SQL);
+            }
+
+            List<EventRow> events = new ArrayList<>(expectedSize);
+            // new identifiers stay out of the shared cache until commit; later chunks find them here
+            IdentifierDictionary.TransactionKeys resolvedKeys = new IdentifierDictionary.TransactionKeys();
+            CopyIn copyIn = null;
+            PgBinaryCopyWriter writer = null;
+            try {
+                while (chunks.hasNext()) {
+                    List<EventRow> chunk = chunks.next();
+                    IdentifierDictionary.Keys keys = identifierDictionary.cached(chunk, resolvedKeys);
+                    if (keys == null) {
+                        // new identifiers: the dictionary rows are written between two COPYs
+                        if (copyIn != null) {
+                            writer.finish();
+                            copyIn = null;
+                        }
+                        keys = identifierDictionary.resolve(con, chunk, resolvedKeys);
+                    }
+                    if (copyIn == null) {
+                        copyIn = con.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL);
+                        writer = new PgBinaryCopyWriter(copyIn, COPY_BUFFER_BYTES);
+                        writer.writeHeader();
+                    }
+                    for (int i = 0; i < chunk.size(); i++) {
+                        EventRow e = chunk.get(i);
+                        writer.startRow(COPY_FIELD_COUNT);
+                        writer.writeInt(events.size());
+                        writer.writeText(e.eventId());
+                        writer.writeTimestamp(e.eventTime());
+                        writer.writeTimestamp(e.receivedTime());
+                        writeKey(writer, keys.machine()[i]);
+                        writer.writeLong(e.durationMs());
+                        writer.writeInt(e.defectCount());
+                        writeKey(writer, keys.factory()[i]);
+                        writeKey(writer, keys.line()[i]);
+                        writer.writeText(e.payloadHash());
+                        events.add(e);
+                    }
+                }
+                if (copyIn != null) {
+                    writer.finish();
+                }
+            } finally {
+                if (copyIn != null && copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+            }
+
+            try (Statement statement = con.createStatement();
+                 ResultSet rs = statement.executeQuery(MERGE_STAGING_SQL)) {
+                return toOutcomes(events, rs);
             }
         });
+    }
+
+    private static void writeKey(PgBinaryCopyWriter writer, Integer key) throws SQLException {
+        if (key == null) {
+            writer.writeNull();
+        } else {
+            writer.writeInt(key);
+        }
+    }
 
+    /**
+     * The limit most recently received keys, newest first. event_keys has no index on
+     * received_time, so this reads the whole table once; meant for warming caches at startup.
+     */
+    public List<EventKey> findRecentKeys(int limit) {
+        return jdbcTemplate.query(
+                "SELECT event_id, payload_hash, received_time FROM event_keys ORDER BY received_time DESC LIMIT ?",
+                (rs, i) -> new EventKey(rs.getString(1), rs.getString(2), rs.getTimestamp(3).toInstant()),
+                limit);
+    }
+
+    /**
+     * Maps the returned (event_id, inserted) rows back onto the request order.
+     * Rows that were not returned, and earlier copies of a repeated event_id, are SKIPPED.
+     */
+    private static UpsertOutcome[] toOutcomes(List<EventRow> events, ResultSet rs) throws SQLException {
+        Map<String, UpsertOutcome> written = new HashMap<>();
+        while (rs.next()) {
+            written.put(rs.getString(1), rs.getBoolean(2) ? UpsertOutcome.INSERTED : UpsertOutcome.UPDATED);
+        }
+
+        UpsertOutcome[] outcomes = new UpsertOutcome[events.size()];
+        Arrays.fill(outcomes, UpsertOutcome.SKIPPED);
+        if (written.isEmpty()) {
+            return outcomes;
+        }
+        // walk backwards so only the last copy of an event_id gets the written outcome
+        for (int i = events.size() - 1; i >= 0; i--) {
+            UpsertOutcome outcome = written.remove(events.get(i).eventId());
+            if (outcome != null) {
+                outcomes[i] = outcome;
+            }
+        }
+        return outcomes;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,9 @@
+package com.assignment.buyogo_backend_assignment.repository;
+
+import java.time.Instant;
+
+/**
+ * One event_keys row: the payload hash and receivedTime currently stored for an event id.
+ */
+public record EventKey(String eventId, String payloadHash, Instant receivedTime) {
+}
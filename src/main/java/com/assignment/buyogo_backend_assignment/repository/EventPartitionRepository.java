@@ -0,0 +1,35 @@
+package com.assignment.buyogo_backend_assignment.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Day partitions of the events table (see V4 migration for the SQL functions).
+ */
+@Repository
+@RequiredArgsConstructor
+public class EventPartitionRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Creates events_pYYYYMMDD for the given UTC day. Returns false if it already existed.
+     */
+    public boolean ensureDailyPartition(LocalDate day) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT ensure_events_partition(?)", Boolean.class, day));
+    }
+
+    /**
+     * Detaches (and unless detachOnly, drops) the day partitions before cutoff and removes
+     * the matching event keys and hourly stats. Returns the partitions that were detached.
+     */
+    public List<String> dropPartitionsBefore(LocalDate cutoff, boolean detachOnly) {
+        return jdbcTemplate.queryForList(
+                "SELECT * FROM drop_events_partitions_before(?, ?)", String.class, cutoff, detachOnly);
+    }
+}
@@ -14,37 +14,109 @@ import java.util.Optional;
 @Repository
 public interface EventRepository extends JpaRepository<Event, Long> {
     Optional<Event> findByEventId(String eventId);
-    List<Event> findByEventIdIn(List<String> eventIds);
 
-    @Query("SELECT COUNT(e) FROM Event e WHERE e.machineId = :machineId " +
-            "AND e.eventTime >= :start AND e.eventTime < :end")
-    long countByMachineIdAndEventTimeBetween(
+    /**
+     * Totals of two disjoint ranges [start1, end1) + [start2, end2) of one machine; an empty
+     * range (start = end) reads nothing. Used for the partial edge buckets of the
+     * in-memory stats window.
+     */
+    @Query(value = """
+            SELECT COALESCE(SUM(t.events_count), 0)::bigint AS eventsCount,
+                   COALESCE(SUM(t.defects_count), 0)::bigint AS defectsCount
+            FROM (
+                SELECT COUNT(*) AS events_count, COALESCE(SUM(e.defect_count) FILTER (WHERE e.defect_count >= 0), 0) AS defects_count
+                FROM events e
+                WHERE e.machine_key = (SELECT m.machine_key FROM machines m WHERE m.machine_id = :machineId)
+                  AND e.event_time >= :start1 AND e.event_time < :end1
+                UNION ALL
+                SELECT COUNT(*), COALESCE(SUM(e.defect_count) FILTER (WHERE e.defect_count >= 0), 0)
+                FROM events e
+                WHERE e.machine_key = (SELECT m.machine_key FROM machines m WHERE m.machine_id = :machineId)
+                  AND e.event_time >= :start2 AND e.event_time < :end2
+            ) t
+            """, nativeQuery = true)
+    StatsTotals sumMachineStatsInRanges(
             @Param("machineId") String machineId,
-            @Param("start") Instant start,
-            @Param("end") Instant end);
+            @Param("start1") Instant start1,
+            @Param("end1") Instant end1,
+            @Param("start2") Instant start2,
+            @Param("end2") Instant end2);
 
-    @Query("SELECT COALESCE(SUM(e.defectCount), 0) FROM Event e WHERE e.machineId = :machineId " +
-            "AND e.eventTime >= :start AND e.eventTime < :end AND e.defectCount >= 0")
-    long sumDefectsByMachineIdAndEventTimeBetween(
+    /**
+     * Per-bucket totals of one machine from :from on, buckets being epoch seconds / bucketSeconds.
+     * Loads a machine into the in-memory stats window.
+     */
+    @Query(value = """
+            SELECT FLOOR(EXTRACT(EPOCH FROM e.event_time) / :bucketSeconds)::bigint AS bucket,
+                   COUNT(*) AS eventsCount,
+                   COALESCE(SUM(e.defect_count) FILTER (WHERE e.defect_count >= 0), 0)::bigint AS defectsCount
+            FROM events e
+            WHERE e.machine_key = (SELECT m.machine_key FROM machines m WHERE m.machine_id = :machineId)
+              AND e.event_time >= :from
+            GROUP BY 1
+            """, nativeQuery = true)
+    List<MachineBucketTotals> sumMachineStatsByBucket(
             @Param("machineId") String machineId,
-            @Param("start") Instant start,
-            @Param("end") Instant end);
-
-    @Query("""
-            SELECT e.lineId, SUM(e.defectCount), COUNT(e)
-            FROM Event e
-            WHERE e.factoryId = :factoryId
-              AND e.eventTime >= :from AND e.eventTime < :to
-              AND e.defectCount >= 0
-              AND e.lineId IS NOT NULL
-            GROUP BY e.lineId
-            ORDER BY SUM(e.defectCount) DESC
-            """)
-    List<Object[]> findTopDefectLinesByFactoryIdAndEventTimeBetween(
+            @Param("from") Instant from,
+            @Param("bucketSeconds") long bucketSeconds);
+
+    /**
+     * Top lines of a factory by total defects. Grouping, ranking, LIMIT and the percentage are
+     * all done in the database (index-only scan on idx_events_factory_time_line + top-N sort),
+     * so only limit rows come back. Rows are grouped by line_key; only the grouped rows are
+     * joined to lines for their line_id.
+     */
+    @Query(value = """
+            SELECT l.line_id AS lineId,
+                   t.total_defects AS totalDefects,
+                   t.event_count AS eventCount,
+                   (ROUND(t.total_defects::numeric / t.event_count, 4) * 100)::float8 AS defectsPercent
+            FROM (
+                SELECT e.line_key, SUM(e.defect_count) AS total_defects, COUNT(*) AS event_count
+                FROM events e
+                WHERE e.factory_key = (SELECT f.factory_key FROM factories f WHERE f.factory_id = :factoryId)
+                  AND e.event_time >= :from AND e.event_time < :to
+                  AND e.defect_count >= 0
+                  AND e.line_key IS NOT NULL
+                GROUP BY e.line_key
+            ) t
+            JOIN lines l ON l.line_key = t.line_key
+            ORDER BY t.total_defects DESC, l.line_id
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<DefectLineTotals> findTopDefectLinesByTotalDefects(
             @Param("factoryId") String factoryId,
             @Param("from") Instant from,
-            @Param("to") Instant to
+            @Param("to") Instant to,
+            @Param("limit") int limit
     );
 
+    /**
+     * Same as above, ranked by the unrounded defects-per-event ratio, ties by total defects.
+     */
+    @Query(value = """
+            SELECT l.line_id AS lineId,
+                   t.total_defects AS totalDefects,
+                   t.event_count AS eventCount,
+                   (ROUND(t.total_defects::numeric / t.event_count, 4) * 100)::float8 AS defectsPercent
+            FROM (
+                SELECT e.line_key, SUM(e.defect_count) AS total_defects, COUNT(*) AS event_count
+                FROM events e
+                WHERE e.factory_key = (SELECT f.factory_key FROM factories f WHERE f.factory_id = :factoryId)
+                  AND e.event_time >= :from AND e.event_time < :to
+                  AND e.defect_count >= 0
+                  AND e.line_key IS NOT NULL
+                GROUP BY e.line_key
+            ) t
+            JOIN lines l ON l.line_key = t.line_key
+            ORDER BY t.total_defects::numeric / t.event_count DESC, t.total_defects DESC, l.line_id
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<DefectLineTotals> findTopDefectLinesByDefectsPercent(
+            @Param("factoryId") String factoryId,
+            @Param("from") Instant from,
+            @Param("to") Instant to,
+            @Param("limit") int limit
+    );
 
 }
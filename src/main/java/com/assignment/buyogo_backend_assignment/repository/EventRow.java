@@ -0,0 +1,22 @@
+package com.assignment.buyogo_backend_assignment.repository;
+
+import java.time.Instant;
+
+/**
+ * One validated event on its way to ingest_events, as the service hands it to
+ * EventBulkRepository: the columns of an events row, with machine / factory / line still as
+ * identifiers. A plain immutable value; unlike the Event entity it has no id or audit
+ * fields and keeps durationMs and defectCount unboxed.
+ */
+public record EventRow(
+        String eventId,
+        Instant eventTime,
+        Instant receivedTime,
+        String machineId,
+        long durationMs,
+        int defectCount,
+        String factoryId,
+        String lineId,
+        String payloadHash
+) {
+}
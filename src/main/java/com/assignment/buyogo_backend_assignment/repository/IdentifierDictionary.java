@@ -0,0 +1,204 @@
+package com.assignment.buyogo_backend_assignment.repository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * machineId / factoryId / lineId -> integer key of the machines, factories and lines
+ * dictionaries (V5 migration), cached in memory. A batch whose identifiers are all cached
+ * needs no lookup; unknown ones are added to their dictionary and read back in one insert +
+ * one select per dimension, in sorted order so concurrent batches lock them in the same order.
+ *
+ * Dictionary rows are never deleted, so cached keys stay valid. Keys resolved inside a
+ * transaction are only cached after it commits: a rollback also removes the new rows.
+ * Until then a caller that resolves several chunks in one transaction keeps them in a
+ * TransactionKeys, so later chunks find them without another lookup.
+ * There is one entry per distinct identifier, so the cache is not bounded.
+ */
+@Component
+@RequiredArgsConstructor
+class IdentifierDictionary {
+
+    enum Dimension {
+        MACHINE("machines", "machine_key", "machine_id", EventRow::machineId),
+        FACTORY("factories", "factory_key", "factory_id", EventRow::factoryId),
+        LINE("lines", "line_key", "line_id", EventRow::lineId);
+
+        private final String insertSql;
+        private final String selectSql;
+        private final Function<EventRow, String> identifier;
+
+        Dimension(String table, String keyColumn, String idColumn, Function<EventRow, String> identifier) {
+            this.insertSql = "INSERT INTO " + table + " (" + idColumn + ") SELECT unnest(?::varchar[]) ORDER BY 1 "
+                    + "ON CONFLICT (" + idColumn + ") DO NOTHING";
+            this.selectSql = "SELECT " + idColumn + ", " + keyColumn + " FROM " + table + " WHERE " + idColumn + " = ANY(?::varchar[])";
+            this.identifier = identifier;
+        }
+    }
+
+    /**
+     * Keys of a batch, one array per dimension in batch order; null where the identifier is null.
+     */
+    record Keys(Integer[] machine, Integer[] factory, Integer[] line) {
+    }
+
+    /**
+     * Keys resolved earlier in the caller's transaction, which the shared cache only gets
+     * after the commit. Not thread-safe; one per transaction.
+     */
+    static final class TransactionKeys {
+        private final Map<Dimension, Map<String, Integer>> keys = new EnumMap<>(Dimension.class);
+
+        private Integer get(Dimension dimension, String id) {
+            Map<String, Integer> resolved = keys.get(dimension);
+            return resolved != null ? resolved.get(id) : null;
+        }
+
+        private void putAll(Dimension dimension, Map<String, Integer> loaded) {
+            keys.computeIfAbsent(dimension, d -> new HashMap<>()).putAll(loaded);
+        }
+    }
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<Dimension, Map<String, Integer>> keys = new EnumMap<>(Dimension.class);
+
+    @PostConstruct
+    void init() {
+        for (Dimension dimension : Dimension.values()) {
+            Map<String, Integer> cached = new ConcurrentHashMap<>();
+            keys.put(dimension, cached);
+            Gauge.builder("events.dictionary.size", cached, Map::size)
+                    .description("Identifiers cached per dictionary")
+                    .tag("dimension", dimension.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Keys of every identifier in the batch, adding unknown identifiers through con. Must not
+     * be called while con is in the middle of a COPY.
+     */
+    Keys resolve(Connection con, List<EventRow> events) throws SQLException {
+        return resolve(con, events, new TransactionKeys());
+    }
+
+    /**
+     * Same as resolve(con, events), also looking in and adding to the keys resolved earlier
+     * in the same transaction.
+     */
+    Keys resolve(Connection con, List<EventRow> events, TransactionKeys resolved) throws SQLException {
+        return new Keys(
+                resolve(con, Dimension.MACHINE, events, resolved),
+                resolve(con, Dimension.FACTORY, events, resolved),
+                resolve(con, Dimension.LINE, events, resolved));
+    }
+
+    /**
+     * Keys of the batch from the cache and the keys resolved earlier in the transaction alone,
+     * or null if any identifier is in neither yet.
+     */
+    Keys cached(List<EventRow> events, TransactionKeys resolved) {
+        Integer[] machine = cached(Dimension.MACHINE, events, resolved);
+        Integer[] factory = machine != null ? cached(Dimension.FACTORY, events, resolved) : null;
+        Integer[] line = factory != null ? cached(Dimension.LINE, events, resolved) : null;
+        return line != null ? new Keys(machine, factory, line) : null;
+    }
+
+    private Integer[] cached(Dimension dimension, List<EventRow> events, TransactionKeys resolved) {
+        Map<String, Integer> cache = keys.get(dimension);
+        Integer[] result = new Integer[events.size()];
+        for (int i = 0; i < result.length; i++) {
+            String id = dimension.identifier.apply(events.get(i));
+            if (id != null && (result[i] = lookup(cache, resolved, dimension, id)) == null) {
+                return null;
+            }
+        }
+        return result;
+    }
+
+    private static Integer lookup(Map<String, Integer> cache, TransactionKeys resolved, Dimension dimension, String id) {
+        Integer key = cache.get(id);
+        return key != null ? key : resolved.get(dimension, id);
+    }
+
+    private Integer[] resolve(Connection con, Dimension dimension, List<EventRow> events,
+                              TransactionKeys resolved) throws SQLException {
+        Map<String, Integer> cache = keys.get(dimension);
+        Integer[] result = new Integer[events.size()];
+        TreeSet<String> missing = null;
+        for (int i = 0; i < result.length; i++) {
+            String id = dimension.identifier.apply(events.get(i));
+            if (id != null && (result[i] = lookup(cache, resolved, dimension, id)) == null) {
+                if (missing == null) {
+                    missing = new TreeSet<>();
+                }
+                missing.add(id);
+            }
+        }
+        if (missing == null) {
+            return result;
+        }
+
+        Map<String, Integer> loaded = load(con, dimension, missing.toArray(String[]::new));
+        for (int i = 0; i < result.length; i++) {
+            if (result[i] == null) {
+                String id = dimension.identifier.apply(events.get(i));
+                if (id != null) {
+                    result[i] = loaded.get(id);
+                }
+            }
+        }
+        resolved.putAll(dimension, loaded);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.putAll(loaded);
+                }
+            });
+        } else {
+            cache.putAll(loaded);
+        }
+        return result;
+    }
+
+    private static Map<String, Integer> load(Connection con, Dimension dimension, String[] ids) throws SQLException {
+        // two statements: the select needs a snapshot that sees rows a concurrent batch
+        // committed while the insert waited on them
+        try (PreparedStatement insert = con.prepareStatement(dimension.insertSql)) {
+            insert.setArray(1, con.createArrayOf("varchar", ids));
+            insert.executeUpdate();
+        }
+        Map<String, Integer> loaded = new HashMap<>();
+        try (PreparedStatement select = con.prepareStatement(dimension.selectSql)) {
+            select.setArray(1, con.createArrayOf("varchar", ids));
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    loaded.put(rs.getString(1), rs.getInt(2));
+                }
+            }
+        }
+        if (loaded.size() != ids.length) {
+            throw new IllegalStateException(dimension + " dictionary returned " + loaded.size() + " of " + ids.length + " keys");
+        }
+        return loaded;
+    }
+}
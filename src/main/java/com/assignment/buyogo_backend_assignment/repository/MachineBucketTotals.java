@@ -0,0 +1,12 @@
+package com.assignment.buyogo_backend_assignment.repository;
+
+/**
+ * Event count and defect sum (defect_count = -1 excluded) of one machine in one time bucket.
+ */
+public interface MachineBucketTotals {
+    long getBucket();
+
+    long getEventsCount();
+
+    long getDefectsCount();
+}
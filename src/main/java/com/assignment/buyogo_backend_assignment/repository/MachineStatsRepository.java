@@ -0,0 +1,115 @@
+package com.assignment.buyogo_backend_assignment.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Per-machine totals of many machines in one statement, handed to the caller row by row as
+ * they are read. /api/v1/stats uses the same statement with a single machine.
+ */
+@Repository
+@RequiredArgsConstructor
+public class MachineStatsRepository {
+
+    // whole hours [fullStart, fullEnd) from machine_hourly_stats, the partial hours at both
+    // edges from events, all grouped by machine_key. Each requested id gets one row, in request
+    // order; ids missing from the machines dictionary get zeros. = ANY(keys) makes each machine
+    // an index-only range scan on idx_events_machine_time / the rollup primary key, and the two
+    // edges are separate scans: an OR of both ranges would become a bitmap heap scan.
+    private static final String BY_MACHINES_SQL = """
+            WITH requested AS (
+                SELECT r.machine_id, r.ord, m.machine_key
+                FROM unnest(?::varchar[]) WITH ORDINALITY AS r(machine_id, ord)
+                LEFT JOIN machines m ON m.machine_id = r.machine_id
+            ), keys AS (
+                SELECT array_agg(machine_key) AS machine_keys FROM requested WHERE machine_key IS NOT NULL
+            ), totals AS (
+                SELECT h.machine_key, h.events_count, h.defects_count
+                FROM machine_hourly_stats h, keys k
+                WHERE h.machine_key = ANY(k.machine_keys)
+                  AND h.hour_start >= ? AND h.hour_start < ?
+                UNION ALL
+                SELECT e.machine_key, COUNT(*), COALESCE(SUM(e.defect_count) FILTER (WHERE e.defect_count >= 0), 0)
+                FROM events e, keys k
+                WHERE e.machine_key = ANY(k.machine_keys)
+                  AND e.event_time >= ? AND e.event_time < ?
+                GROUP BY e.machine_key
+                UNION ALL
+                SELECT e.machine_key, COUNT(*), COALESCE(SUM(e.defect_count) FILTER (WHERE e.defect_count >= 0), 0)
+                FROM events e, keys k
+                WHERE e.machine_key = ANY(k.machine_keys)
+                  AND e.event_time >= ? AND e.event_time < ?
+                GROUP BY e.machine_key
+            )
+            SELECT r.machine_id,
+                   COALESCE(SUM(t.events_count), 0)::bigint,
+                   COALESCE(SUM(t.defects_count), 0)::bigint
+            FROM requested r
+            LEFT JOIN totals t ON t.machine_key = r.machine_key
+            GROUP BY r.machine_id, r.ord
+            ORDER BY r.ord
+            """;
+
+    // one index-only scan of the factory's window on idx_events_factory_time_line (V6 migration),
+    // grouped by machine; only the grouped rows are joined to machines for their machine_id.
+    // The rollup has no factory, so the whole window is read from events.
+    private static final String BY_FACTORY_SQL = """
+            SELECT m.machine_id, t.events_count, t.defects_count
+            FROM (
+                SELECT e.machine_key, COUNT(*) AS events_count,
+                       COALESCE(SUM(e.defect_count) FILTER (WHERE e.defect_count >= 0), 0)::bigint AS defects_count
+                FROM events e
+                WHERE e.factory_key = (SELECT f.factory_key FROM factories f WHERE f.factory_id = ?)
+                  AND e.event_time >= ? AND e.event_time < ?
+                GROUP BY e.machine_key
+            ) t
+            JOIN machines m ON m.machine_key = t.machine_key
+            ORDER BY m.machine_id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Totals of every machine over [start, end), whole hours [fullStart, fullEnd) read from
+     * the hourly rollup. fullStart and fullEnd must be UTC hour boundaries with
+     * start <= fullStart <= fullEnd <= end; fullStart = fullEnd = end reads only raw events.
+     */
+    public void sumByMachines(List<String> machineIds, Instant start, Instant end, Instant fullStart, Instant fullEnd,
+                              Consumer<MachineTotals> sink) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(BY_MACHINES_SQL);
+            ps.setArray(1, con.createArrayOf("varchar", machineIds.toArray()));
+            ps.setObject(2, utc(fullStart));
+            ps.setObject(3, utc(fullEnd));
+            ps.setObject(4, utc(start));
+            ps.setObject(5, utc(fullStart));
+            ps.setObject(6, utc(fullEnd));
+            ps.setObject(7, utc(end));
+            return ps;
+        }, rs -> {
+            sink.accept(new MachineTotals(rs.getString(1), rs.getLong(2), rs.getLong(3)));
+        });
+    }
+
+    /**
+     * Totals of the factory's events over [start, end) for every machine that has any,
+     * ordered by machineId.
+     */
+    public void sumByFactory(String factoryId, Instant start, Instant end, Consumer<MachineTotals> sink) {
+        jdbcTemplate.query(BY_FACTORY_SQL, rs -> {
+            sink.accept(new MachineTotals(rs.getString(1), rs.getLong(2), rs.getLong(3)));
+        }, factoryId, utc(start), utc(end));
+    }
+
+    private static OffsetDateTime utc(Instant instant) {
+        return instant.atOffset(ZoneOffset.UTC);
+    }
+}
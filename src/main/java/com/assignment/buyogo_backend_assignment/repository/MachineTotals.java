@@ -0,0 +1,7 @@
+package com.assignment.buyogo_backend_assignment.repository;
+
+/**
+ * Event count and defect sum (defect_count = -1 excluded) of one machine over a window.
+ */
+public record MachineTotals(String machineId, long eventsCount, long defectsCount) {
+}
@@ -0,0 +1,130 @@
+package com.assignment.buyogo_backend_assignment.repository;
+
+import org.postgresql.copy.CopyIn;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.Instant;
+
+/**
+ * Encodes rows in the PostgreSQL binary COPY format and streams them to a CopyIn
+ * through a fixed-size buffer.
+ *
+ * Only the types used by the events staging table are supported:
+ * text, int4, int8 and timestamptz.
+ */
+class PgBinaryCopyWriter {
+
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff, '\r', '\n', 0};
+
+    // 2000-01-01T00:00:00Z, the PostgreSQL timestamp epoch
+    private static final long PG_EPOCH_SECOND = 946_684_800L;
+
+    private final CopyIn copyIn;
+    private final byte[] buffer;
+    private int position;
+
+    PgBinaryCopyWriter(CopyIn copyIn, int bufferSize) {
+        this.copyIn = copyIn;
+        this.buffer = new byte[bufferSize];
+    }
+
+    void writeHeader() throws SQLException {
+        ensure(SIGNATURE.length + 8);
+        System.arraycopy(SIGNATURE, 0, buffer, position, SIGNATURE.length);
+        position += SIGNATURE.length;
+        putInt(0); // flags
+        putInt(0); // header extension length
+    }
+
+    void startRow(int fieldCount) throws SQLException {
+        ensure(2);
+        putShort(fieldCount);
+    }
+
+    void writeInt(int value) throws SQLException {
+        ensure(8);
+        putInt(4);
+        putInt(value);
+    }
+
+    void writeLong(long value) throws SQLException {
+        ensure(12);
+        putInt(8);
+        putLong(value);
+    }
+
+    void writeTimestamp(Instant value) throws SQLException {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        long micros = (value.getEpochSecond() - PG_EPOCH_SECOND) * 1_000_000L + (value.getNano() + 500) / 1000;
+        writeLong(micros);
+    }
+
+    void writeText(String value) throws SQLException {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensure(4);
+        putInt(bytes.length);
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (position == buffer.length) {
+                flush();
+            }
+            int n = Math.min(bytes.length - offset, buffer.length - position);
+            System.arraycopy(bytes, offset, buffer, position, n);
+            position += n;
+            offset += n;
+        }
+    }
+
+    void writeNull() throws SQLException {
+        ensure(4);
+        putInt(-1);
+    }
+
+    /**
+     * Writes the trailer, flushes and ends the COPY. Returns the number of rows copied.
+     */
+    long finish() throws SQLException {
+        ensure(2);
+        putShort(-1);
+        flush();
+        return copyIn.endCopy();
+    }
+
+    private void ensure(int bytes) throws SQLException {
+        if (position + bytes > buffer.length) {
+            flush();
+        }
+    }
+
+    private void flush() throws SQLException {
+        if (position > 0) {
+            copyIn.writeToCopy(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    private void putShort(int v) {
+        buffer[position++] = (byte) (v >>> 8);
+        buffer[position++] = (byte) v;
+    }
+
+    private void putInt(int v) {
+        buffer[position++] = (byte) (v >>> 24);
+        buffer[position++] = (byte) (v >>> 16);
+        buffer[position++] = (byte) (v >>> 8);
+        buffer[position++] = (byte) v;
+    }
+
+    private void putLong(long v) {
+        putInt((int) (v >>> 32));
+        putInt((int) v);
+    }
+}
@@ -0,0 +1,10 @@
+package com.assignment.buyogo_backend_assignment.repository;
+
+/**
+ * Event count and defect sum (defect_count = -1 excluded) of one machine over a window.
+ */
+public interface StatsTotals {
+    long getEventsCount();
+
+    long getDefectsCount();
+}
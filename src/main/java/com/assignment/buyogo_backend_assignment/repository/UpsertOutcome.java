@@ -0,0 +1,15 @@
+package com.assignment.buyogo_backend_assignment.repository;
+
+/**
+ * What the upsert did with one incoming row, as reported by RETURNING.
+ */
+public enum UpsertOutcome {
+    // new event_id (xmax = 0 on the returned row)
+    INSERTED,
+    // existing row replaced: different payload and newer receivedTime
+    UPDATED,
+    // not returned: same payload, stale update, or superseded by a later copy in the same batch
+    SKIPPED,
+    // not written: the row's chunk failed and was rolled back (chunked upserts with commit-per-chunk)
+    FAILED
+}
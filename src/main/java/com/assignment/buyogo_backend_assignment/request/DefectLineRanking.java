@@ -0,0 +1,25 @@
+package com.assignment.buyogo_backend_assignment.request;
+
+import com.assignment.buyogo_backend_assignment.exception.ValidationException;
+
+import java.util.Locale;
+
+/**
+ * Order of /api/v1/stats/top-defect-lines.
+ *
+ * DEFECTS - highest total defect count first (default).
+ * PERCENT - highest defects per event first, so small lines with a bad rate are not hidden
+ *           behind big lines.
+ */
+public enum DefectLineRanking {
+    DEFECTS,
+    PERCENT;
+
+    public static DefectLineRanking from(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("rankBy must be one of: defects, percent");
+        }
+    }
+}
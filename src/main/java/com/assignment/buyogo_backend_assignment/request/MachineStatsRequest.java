@@ -0,0 +1,38 @@
+package com.assignment.buyogo_backend_assignment.request;
+
+import com.assignment.buyogo_backend_assignment.exception.ValidationException;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * /api/v1/stats/machines: stats of the listed machines, or of every machine with events of
+ * one factory in the window. Exactly one of machineIds / factoryId is set.
+ */
+public record MachineStatsRequest(
+        List<String> machineIds,
+        String factoryId,
+        Instant start,
+        Instant end
+) {
+    public static final int MAX_MACHINE_IDS = 1000;
+
+    public MachineStatsRequest {
+        boolean byMachines = machineIds != null && !machineIds.isEmpty();
+        boolean byFactory = factoryId != null && !factoryId.isBlank();
+        if (byMachines == byFactory) {
+            throw new ValidationException("exactly one of machineIds or factoryId is required");
+        }
+        if (byMachines && machineIds.size() > MAX_MACHINE_IDS) {
+            throw new ValidationException("at most " + MAX_MACHINE_IDS + " machineIds per request");
+        }
+        if (byMachines && machineIds.stream().anyMatch(id -> id == null || id.isBlank())) {
+            throw new ValidationException("machine id is required");
+        }
+        if (start == null || end == null) {
+            throw new ValidationException("start and end event time are required");
+        }
+        machineIds = byMachines ? List.copyOf(machineIds) : null;
+        factoryId = byFactory ? factoryId : null;
+    }
+}
@@ -13,6 +13,8 @@ public class BatchResponse
 {
     private int accepted;
     private int deduped;
+    // repeated eventIds inside the request, dropped before the write (the last copy is kept)
+    private int collapsed;
     private int updated;
     private int rejected;
     private List<RejectionDetail> rejections;
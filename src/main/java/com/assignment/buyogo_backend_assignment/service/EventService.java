@@ -4,10 +4,14 @@ import com.assignment.buyogo_backend_assignment.request.EventRequest;
 import com.assignment.buyogo_backend_assignment.response.BatchResponse;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 @Service
 public interface EventService {
     BatchResponse processBatchEvents(List<EventRequest> eventRequest);
 
+    BatchResponse processEventStream(InputStream ndjson) throws IOException;
+
 }
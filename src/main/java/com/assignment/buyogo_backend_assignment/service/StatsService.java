@@ -1,5 +1,7 @@
 package com.assignment.buyogo_backend_assignment.service;
 
+import com.assignment.buyogo_backend_assignment.request.DefectLineRanking;
+import com.assignment.buyogo_backend_assignment.request.MachineStatsRequest;
 import com.assignment.buyogo_backend_assignment.request.StatsRequest;
 import com.assignment.buyogo_backend_assignment.response.DefectLineResponse;
 import com.assignment.buyogo_backend_assignment.response.StatsResponse;
@@ -7,9 +9,11 @@ import org.springframework.stereotype.Service;
 
 import java.time.Instant;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Service
 public interface StatsService {
     StatsResponse getStats(StatsRequest statsRequest);
-    List<DefectLineResponse> getDefectsLine(String factoryId, Instant from, Instant to, int limit);
+    List<DefectLineResponse> getDefectsLine(String factoryId, Instant from, Instant to, int limit, DefectLineRanking rankBy);
+    void streamMachineStats(MachineStatsRequest request, Consumer<StatsResponse> sink);
 }
@@ -0,0 +1,95 @@
+package com.assignment.buyogo_backend_assignment.service.serviceImpl;
+
+import com.assignment.buyogo_backend_assignment.response.BatchResponse;
+import com.assignment.buyogo_backend_assignment.response.RejectionDetail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Running accepted/deduped/collapsed/updated/rejected counts of one request.
+ * Rejection details are capped so a huge stream of bad events cannot grow the heap;
+ * the rejected count itself is always exact.
+ */
+class BatchTally {
+
+    private final int maxRejectionDetails;
+    private final List<RejectionDetail> rejections = new ArrayList<>();
+    private int accepted;
+    private int deduped;
+    private int collapsed;
+    private int updated;
+    private int rejected;
+    private final int[] rejectedBy = new int[RejectReason.ALL.length];
+
+    BatchTally() {
+        this(Integer.MAX_VALUE);
+    }
+
+    BatchTally(int maxRejectionDetails) {
+        this.maxRejectionDetails = maxRejectionDetails;
+    }
+
+    void reject(String eventId, RejectReason reason, String message) {
+        rejected++;
+        rejectedBy[reason.ordinal()]++;
+        if (rejections.size() < maxRejectionDetails) {
+            rejections.add(RejectionDetail.builder()
+                    .eventId(eventId)
+                    .reason(message)
+                    .build());
+        }
+    }
+
+    /**
+     * Adds the counts of a tally that was filled separately (a chunk prepared on another
+     * thread) and appends its rejections after the ones already recorded.
+     */
+    void addPrepared(BatchTally other) {
+        accepted += other.accepted;
+        deduped += other.deduped;
+        collapsed += other.collapsed;
+        updated += other.updated;
+        rejected += other.rejected;
+        for (int i = 0; i < rejectedBy.length; i++) {
+            rejectedBy[i] += other.rejectedBy[i];
+        }
+        for (RejectionDetail detail : other.rejections) {
+            if (rejections.size() >= maxRejectionDetails) {
+                break;
+            }
+            rejections.add(detail);
+        }
+    }
+
+    void collapsed(int count) {
+        collapsed += count;
+    }
+
+    void add(EventServiceImpl.Classification classification) {
+        accepted += classification.accepted();
+        deduped += classification.deduped();
+        updated += classification.updated();
+    }
+
+    /**
+     * Adds the final counts of the request to the ingest counters.
+     */
+    void publish(IngestMetrics metrics) {
+        metrics.events(accepted, deduped, collapsed, updated);
+        for (RejectReason reason : RejectReason.ALL) {
+            metrics.rejected(reason, rejectedBy[reason.ordinal()]);
+        }
+    }
+
+    BatchResponse toResponse() {
+        return BatchResponse.builder()
+                .accepted(accepted)
+                .deduped(deduped)
+                .collapsed(collapsed)
+                .updated(updated)
+                .rejected(rejected)
+                .rejections(rejections)
+                .build();
+    }
+}
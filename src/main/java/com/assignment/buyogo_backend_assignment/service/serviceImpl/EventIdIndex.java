@@ -0,0 +1,88 @@
+package com.assignment.buyogo_backend_assignment.service.serviceImpl;
+
+
+import com.assignment.buyogo_backend_assignment.repository.EventRow;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * eventId -> int map with open addressing (linear probing over two parallel arrays), sized
+ * once for a batch. Unlike HashMap it allocates no node or boxed Integer per entry.
+ * Not thread safe, no removal.
+ */
+final class EventIdIndex {
+
+    static final int ABSENT = -1;
+
+    private final String[] keys;
+    private final int[] values;
+    private final int mask;
+
+    EventIdIndex(int expectedSize) {
+        // load factor <= 0.5
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 2) * 2 - 1) << 1;
+        keys = new String[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Maps key to value and returns the previous value, or ABSENT.
+     */
+    int put(String key, int value) {
+        int slot = slotOf(key);
+        int previous = keys[slot] != null ? values[slot] : ABSENT;
+        keys[slot] = key;
+        values[slot] = value;
+        return previous;
+    }
+
+    int get(String key) {
+        int slot = slotOf(key);
+        return keys[slot] != null ? values[slot] : ABSENT;
+    }
+
+    private int slotOf(String key) {
+        // spread the hash so ids that differ only in their last characters do not cluster
+        int h = key.hashCode() * 0x9E3779B9;
+        int slot = (h ^ (h >>> 16)) & mask;
+        while (keys[slot] != null && !keys[slot].equals(key)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Indexes every event by eventId, the last copy winning.
+     */
+    static EventIdIndex lastCopies(List<EventRow> events) {
+        EventIdIndex index = new EventIdIndex(events.size());
+        for (int i = 0; i < events.size(); i++) {
+            index.put(events.get(i).eventId(), i);
+        }
+        return index;
+    }
+
+    /**
+     * Drops every copy of an eventId but the last one, the same copy ingest_events would
+     * keep. Returns the input list itself when there are no repeated ids.
+     */
+    static List<EventRow> collapse(List<EventRow> events) {
+        if (events.size() < 2) {
+            return events;
+        }
+        EventIdIndex index = lastCopies(events);
+        List<EventRow> kept = null;
+        for (int i = 0; i < events.size(); i++) {
+            EventRow e = events.get(i);
+            boolean last = index.get(e.eventId()) == i;
+            if (!last && kept == null) {
+                // first repeat found: copy what was kept so far
+                kept = new ArrayList<>(events.subList(0, i));
+            } else if (last && kept != null) {
+                kept.add(e);
+            }
+        }
+        return kept != null ? kept : events;
+    }
+}
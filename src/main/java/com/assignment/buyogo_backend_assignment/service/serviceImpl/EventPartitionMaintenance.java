@@ -0,0 +1,75 @@
+package com.assignment.buyogo_backend_assignment.service.serviceImpl;
+
+import com.assignment.buyogo_backend_assignment.repository.EventPartitionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * Keeps the day partitions of events ahead of time and applies the retention policy.
+ * Runs once at startup and then daily. Safe with several app instances: the SQL
+ * functions serialize on an advisory lock and are idempotent.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EventPartitionMaintenance {
+
+    private final EventPartitionRepository eventPartitionRepository;
+    private final SlidingWindowStats slidingWindowStats;
+    private final StatsCache statsCache;
+    private final KnownEventIds knownEventIds;
+
+    @Value("${events.partitions.maintenance-enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${events.partitions.precreate-days:7}")
+    private int precreateDays = 7;
+
+    @Value("${events.partitions.retention-days:0}")
+    private int retentionDays = 0;
+
+    @Value("${events.partitions.retention-detach-only:false}")
+    private boolean detachOnly = false;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintain();
+    }
+
+    @Scheduled(cron = "${events.partitions.maintenance-cron:0 5 0 * * *}", zone = "UTC")
+    public void maintain() {
+        if (!enabled) {
+            return;
+        }
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+
+        // today is included in case the app was down when it should have been created
+        for (int i = 0; i <= precreateDays; i++) {
+            LocalDate day = today.plusDays(i);
+            if (eventPartitionRepository.ensureDailyPartition(day)) {
+                log.info("Created events partition for {}", day);
+            }
+        }
+
+        if (retentionDays > 0) {
+            LocalDate cutoff = today.minusDays(retentionDays);
+            List<String> removed = eventPartitionRepository.dropPartitionsBefore(cutoff, detachOnly);
+            if (!removed.isEmpty()) {
+                // rows were deleted behind the in-memory stats window's and the caches' back
+                slidingWindowStats.invalidateAll();
+                statsCache.invalidateAll();
+                knownEventIds.invalidateAll();
+                log.info("{} events partitions before {}: {}", detachOnly ? "Detached" : "Dropped", cutoff, removed);
+            }
+        }
+    }
+}
@@ -1,154 +1,476 @@
 package com.assignment.buyogo_backend_assignment.service.serviceImpl;
 
-import com.assignment.buyogo_backend_assignment.entity.Event;
 import com.assignment.buyogo_backend_assignment.exception.ValidationException;
 import com.assignment.buyogo_backend_assignment.repository.EventBulkRepository;
-import com.assignment.buyogo_backend_assignment.repository.EventRepository;
+import com.assignment.buyogo_backend_assignment.repository.EventRow;
+import com.assignment.buyogo_backend_assignment.repository.UpsertOutcome;
 import com.assignment.buyogo_backend_assignment.request.EventRequest;
 import com.assignment.buyogo_backend_assignment.response.BatchResponse;
-import com.assignment.buyogo_backend_assignment.response.RejectionDetail;
 import com.assignment.buyogo_backend_assignment.service.EventService;
 import com.assignment.buyogo_backend_assignment.util.EventPayloadHashUtil;
+import com.assignment.buyogo_backend_assignment.util.HashAlgorithm;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.time.Duration;
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.Instant;
-import java.util.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
 
 @Service
 @RequiredArgsConstructor
 public class EventServiceImpl implements EventService {
 
-    private final EventRepository eventRepository;
+    private final WriteBehindBuffer writeBehindBuffer;
+    private final ShardedIngestDispatcher shardedIngestDispatcher;
     private final EventBulkRepository eventBulkRepository;
+    private final SlidingWindowStats slidingWindowStats;
+    private final StatsCache statsCache;
+    private final KnownEventIds knownEventIds;
+    private final ObjectMapper objectMapper;
+    private final IngestMetrics ingestMetrics;
 
     private static final long MAX_DURATION_MS = 21_600_000L; // 6 hours
-    private static final long MAX_FUTURE_MINUTES = 15;
+    static final long MAX_FUTURE_MINUTES = 15;
 
+    @Value("${events.hash.algorithm:SHA_256}")
+    private HashAlgorithm hashAlgorithm = HashAlgorithm.SHA_256;
+
+    @Value("${events.ingest.stream-chunk-size:1000}")
+    private int streamChunkSize = 1000;
+
+    @Value("${events.ingest.stream-max-rejection-details:1000}")
+    private int maxStreamRejectionDetails = 1000;
+
+    // batches of at least this many events are validated + hashed in parallel chunks (0 = off)
+    @Value("${events.ingest.parallel.min-batch-size:5000}")
+    private int parallelMinBatchSize = 5000;
+
+    @Value("${events.ingest.parallel.chunk-size:1000}")
+    private int parallelChunkSize = 1000;
+
+    // 0 = one per available processor
+    @Value("${events.ingest.parallel.threads:0}")
+    private int parallelThreads = 0;
+
+    private ForkJoinPool preparePool;
+
+    @PostConstruct
+    void startPreparePool() {
+        if (parallelMinBatchSize > 0) {
+            preparePool = new ForkJoinPool(parallelThreads > 0 ? parallelThreads : Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    @PreDestroy
+    void stopPreparePool() {
+        if (preparePool != null) {
+            preparePool.shutdown();
+        }
+    }
+
+    /**
+     * No surrounding transaction: validation and hashing are CPU only, and the upsert is a
+     * single statement (or COPY + merge in its own transaction) inside EventBulkRepository.
+     */
     @Override
-    @Transactional
     public BatchResponse processBatchEvents(List<EventRequest> eventRequests) {
-        int accepted = 0;
-        int deduped = 0;
-        int updated = 0;
-        int rejected = 0;
+        if (preparePool != null && eventRequests.size() >= parallelMinBatchSize) {
+            return canPipelineWrite() ? processBatchPipelined(eventRequests) : processBatchParallel(eventRequests);
+        }
+        long start = System.nanoTime();
+        BatchTally tally = new BatchTally();
 
-        List<RejectionDetail> rejections = new ArrayList<>();
+        // 1) Collect valid events, all received at the same instant
+        Instant receivedTime = Instant.now();
+        List<EventRow> validEvents = new ArrayList<>(eventRequests.size());
+        for (EventRequest req : eventRequests) {
+            EventRow e = toValidatedEvent(req, receivedTime, tally);
+            if (e != null) {
+                validEvents.add(e);
+            }
+        }
 
-        // 1) Collect valid events
-        List<Event> validEvents = new ArrayList<>();
-        Set<String> eventIds = new HashSet<>();
+        ingestMetrics.stage(IngestMetrics.Stage.PREPARE, System.nanoTime() - start);
 
+        // 2) Bulk upsert + count accepted / updated / deduped
+        upsert(validEvents, tally);
+
+        return finish(tally, IngestMetrics.Path.BATCH, start);
+    }
+
+    /**
+     * Large batches: chunks are validated and hashed on the prepare pool, and each finished
+     * chunk is COPYed in request order while later chunks are still being prepared. The
+     * whole batch is still one transaction and one merge, so duplicates inside it resolve
+     * exactly as in the sequential path (last copy wins). Rejections are merged chunk by
+     * chunk in request order.
+     */
+    private BatchResponse processBatchPipelined(List<EventRequest> eventRequests) {
+        long start = System.nanoTime();
+        Instant receivedTime = Instant.now();
+        List<CompletableFuture<PreparedChunk>> chunks = new ArrayList<>();
+        for (int from = 0; from < eventRequests.size(); from += parallelChunkSize) {
+            List<EventRequest> slice = eventRequests.subList(from, Math.min(from + parallelChunkSize, eventRequests.size()));
+            chunks.add(CompletableFuture.supplyAsync(() -> prepareChunk(slice, receivedTime), preparePool));
+        }
+
+        Set<String> machineIds = new HashSet<>();
         for (EventRequest req : eventRequests) {
-            try {
-                validateEvent(req);
-
-                Instant receivedTime = Instant.now(); // backend sets
-                String payloadHash = EventPayloadHashUtil.computeHash(req);
-
-                Event e = Event.builder()
-                        .eventId(req.eventId())
-                        .eventTime(req.eventTime())
-                        .receivedTime(receivedTime)
-                        .machineId(req.machineId())
-                        .durationMs(req.durationMs())
-                        .defectCount(req.defectCount())
-                        .factoryId(req.factoryId())
-                        .lineId(req.lineId())
-                        .payloadHash(payloadHash)
-                        .build();
+            if (req != null) {
+                machineIds.add(req.machineId());
+            }
+        }
 
-                validEvents.add(e);
-                eventIds.add(req.eventId());
-
-            } catch (ValidationException ve) {
-                rejected++;
-                rejections.add(RejectionDetail.builder()
-                        .eventId(req != null ? req.eventId() : null)
-                        .reason(ve.getMessage())
-                        .build());
-            } catch (Exception e) {
-                rejected++;
-                rejections.add(RejectionDetail.builder()
-                        .eventId(req != null ? req.eventId() : null)
-                        .reason("Unexpected error: " + e.getMessage())
-                        .build());
+        BatchTally tally = new BatchTally();
+        List<EventRow> validEvents = new ArrayList<>(eventRequests.size());
+        Iterator<List<EventRow>> ready = new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < chunks.size();
             }
+
+            @Override
+            public List<EventRow> next() {
+                PreparedChunk chunk = chunks.get(next++).join();
+                tally.addPrepared(chunk.tally());
+                validEvents.addAll(chunk.events());
+                return chunk.events();
+            }
+        };
+
+        UpsertOutcome[] outcomes = null;
+        long writeStart = System.nanoTime();
+        SlidingWindowStats.WriteTicket ticket = slidingWindowStats.beginWrite(machineIds);
+        try {
+            outcomes = eventBulkRepository.bulkUpsertCopyChunks(ready, eventRequests.size());
+            // overlaps with the prepare of later chunks
+            ingestMetrics.stage(IngestMetrics.Stage.WRITE, System.nanoTime() - writeStart);
+        } finally {
+            slidingWindowStats.endWrite(ticket, validEvents, outcomes);
+            statsCache.afterWrite(validEvents, outcomes);
+            knownEventIds.afterWrite(validEvents, outcomes);
         }
 
-        if (validEvents.isEmpty()) {
-            return BatchResponse.builder()
-                    .accepted(accepted)
-                    .deduped(deduped)
-                    .updated(updated)
-                    .rejected(rejected)
-                    .rejections(rejections)
-                    .build();
-        }
-
-        // 2) Prefetch existing events for classification (only needed rows)
-        Map<String, Event> existingMap = new HashMap<>();
-        List<Event> existingEvents = eventRepository.findByEventIdIn(new ArrayList<>(eventIds));
-        for (Event ex : existingEvents) {
-            existingMap.put(ex.getEventId(), ex);
-        }
-
-        // 3) Bulk upsert (FAST)
-        int[] results = eventBulkRepository.bulkUpsert(validEvents);
-
-        // 4) Count accepted / updated / deduped
-        // NOTE: results[i] is usually 1 if insert/update happened, 0 if no-op
-        for (int i = 0; i < validEvents.size(); i++) {
-            Event incoming = validEvents.get(i);
-            Event existing = existingMap.get(incoming.getEventId());
-
-            if (existing == null) {
-                // was not in DB at prefetch time => likely insert
-                accepted++;
-            } else {
-                // existed already
-                if (Objects.equals(existing.getPayloadHash(), incoming.getPayloadHash())) {
-                    deduped++;
-                } else {
-                    // payload differs -> update may happen only if incoming receivedTime newer
-                    if (incoming.getReceivedTime().isAfter(existing.getReceivedTime()) && results[i] > 0) {
-                        updated++;
-                    } else {
-                        deduped++;
-                    }
+        // chunks were collapsed on their own; copies repeated across chunks reached the
+        // merge, which kept the last one, so they are counted as collapsed, not deduped.
+        // FAILED copies are rejections like in the sequential path
+        int repeated = 0;
+        if (chunks.size() > 1) {
+            EventIdIndex lastCopies = EventIdIndex.lastCopies(validEvents);
+            for (int i = 0; i < validEvents.size(); i++) {
+                if (outcomes[i] != UpsertOutcome.FAILED && lastCopies.get(validEvents.get(i).eventId()) != i) {
+                    repeated++;
+                }
+            }
+        }
+        Classification classification = classify(outcomes);
+        tally.collapsed(repeated);
+        tally.add(new Classification(classification.accepted(), classification.deduped() - repeated, classification.updated()));
+        rejectFailed(validEvents, outcomes, tally);
+        return finish(tally, IngestMetrics.Path.PIPELINED, start);
+    }
+
+    /**
+     * The pipelined COPY writes the batch as one transaction and one merge, so it is only
+     * used when the sequential path would do the same: chunked upserts size and commit their
+     * own chunks, and with sharding every write must go through the shard writers.
+     */
+    private boolean canPipelineWrite() {
+        return !eventBulkRepository.isChunkingEnabled() && !shardedIngestDispatcher.isEnabled();
+    }
+
+    /**
+     * Large batches that cannot be pipelined: chunks are still validated and hashed on the
+     * prepare pool, then the whole batch goes through the same upsert as the sequential path.
+     */
+    private BatchResponse processBatchParallel(List<EventRequest> eventRequests) {
+        long start = System.nanoTime();
+        Instant receivedTime = Instant.now();
+        List<CompletableFuture<PreparedChunk>> chunks = new ArrayList<>();
+        for (int from = 0; from < eventRequests.size(); from += parallelChunkSize) {
+            List<EventRequest> slice = eventRequests.subList(from, Math.min(from + parallelChunkSize, eventRequests.size()));
+            chunks.add(CompletableFuture.supplyAsync(() -> validateChunk(slice, receivedTime), preparePool));
+        }
+
+        BatchTally tally = new BatchTally();
+        List<EventRow> validEvents = new ArrayList<>(eventRequests.size());
+        for (CompletableFuture<PreparedChunk> chunk : chunks) {
+            PreparedChunk prepared = chunk.join();
+            tally.addPrepared(prepared.tally());
+            validEvents.addAll(prepared.events());
+        }
+
+        upsert(validEvents, tally);
+        return finish(tally, IngestMetrics.Path.BATCH, start);
+    }
+
+    private PreparedChunk prepareChunk(List<EventRequest> requests, Instant receivedTime) {
+        PreparedChunk validated = validateChunk(requests, receivedTime);
+        BatchTally tally = validated.tally();
+        List<EventRow> events = validated.events();
+        long dedupeStart = System.nanoTime();
+        List<EventRow> collapsed = EventIdIndex.collapse(events);
+        tally.collapsed(events.size() - collapsed.size());
+        List<EventRow> unknown = knownEventIds.dropKnownDuplicates(collapsed);
+        tally.add(new Classification(0, collapsed.size() - unknown.size(), 0));
+        ingestMetrics.stage(IngestMetrics.Stage.DEDUPE, System.nanoTime() - dedupeStart);
+        return new PreparedChunk(unknown, tally);
+    }
+
+    private PreparedChunk validateChunk(List<EventRequest> requests, Instant receivedTime) {
+        long start = System.nanoTime();
+        BatchTally tally = new BatchTally();
+        List<EventRow> events = new ArrayList<>(requests.size());
+        for (EventRequest req : requests) {
+            EventRow e = toValidatedEvent(req, receivedTime, tally);
+            if (e != null) {
+                events.add(e);
+            }
+        }
+        ingestMetrics.stage(IngestMetrics.Stage.PREPARE, System.nanoTime() - start);
+        return new PreparedChunk(events, tally);
+    }
+
+    private record PreparedChunk(List<EventRow> events, BatchTally tally) {
+    }
+
+    /**
+     * Reads one event at a time with Jackson's streaming parser and upserts every
+     * streamChunkSize valid events, so memory does not grow with the size of the upload.
+     * Each chunk commits on its own: if the stream breaks halfway, earlier chunks stay
+     * stored, and re-sending the whole stream is safe because those events dedupe.
+     */
+    @Override
+    public BatchResponse processEventStream(InputStream ndjson) throws IOException {
+        long start = System.nanoTime();
+        BatchTally tally = new BatchTally(maxStreamRejectionDetails);
+        List<EventRow> chunk = new ArrayList<>(streamChunkSize);
+        // one receivedTime per chunk, later chunks are received later
+        Instant receivedTime = Instant.now();
+        // prepare of a chunk = parse + validate + hash of its events
+        long prepareStart = start;
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(ndjson)) {
+            while (nextRootToken(parser) != null) {
+                EventRequest req;
+                try {
+                    req = objectMapper.readValue(parser, EventRequest.class);
+                } catch (JsonMappingException e) {
+                    // well-formed JSON that does not fit EventRequest (wrong type, bad timestamp, ...)
+                    tally.reject(null, RejectReason.MALFORMED, "Malformed event at line " + e.getLocation().getLineNr() + ": " + e.getOriginalMessage());
+                    skipToRoot(parser);
+                    continue;
                 }
+
+                EventRow e = toValidatedEvent(req, receivedTime, tally);
+                if (e != null) {
+                    chunk.add(e);
+                }
+                if (chunk.size() == streamChunkSize) {
+                    ingestMetrics.stage(IngestMetrics.Stage.PREPARE, System.nanoTime() - prepareStart);
+                    upsert(chunk, tally);
+                    chunk.clear();
+                    receivedTime = Instant.now();
+                    prepareStart = System.nanoTime();
+                }
+            }
+        }
+        ingestMetrics.stage(IngestMetrics.Stage.PREPARE, System.nanoTime() - prepareStart);
+        upsert(chunk, tally);
+
+        return finish(tally, IngestMetrics.Path.STREAM, start);
+    }
+
+    private BatchResponse finish(BatchTally tally, IngestMetrics.Path path, long startNanos) {
+        tally.publish(ingestMetrics);
+        ingestMetrics.request(path, startNanos);
+        return tally.toResponse();
+    }
+
+    private JsonToken nextRootToken(JsonParser parser) throws IOException {
+        try {
+            return parser.nextToken();
+        } catch (JsonParseException e) {
+            throw new ValidationException("Malformed NDJSON at line " + e.getLocation().getLineNr() + ": " + e.getOriginalMessage());
+        }
+    }
+
+    // after a failed readValue the parser can sit inside the broken object
+    private void skipToRoot(JsonParser parser) throws IOException {
+        while (!parser.getParsingContext().inRoot()) {
+            if (nextRootToken(parser) == null) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Validates and hashes one request into the row that is written. Returns null (and
+     * records the rejection) when invalid. receivedTime is set by the backend, once per
+     * batch, and is also the "now" for the future-eventTime check.
+     */
+    private EventRow toValidatedEvent(EventRequest req, Instant receivedTime, BatchTally tally) {
+        try {
+            validateEvent(req, receivedTime);
+
+            String payloadHash = EventPayloadHashUtil.computeHash(req, hashAlgorithm);
+
+            return new EventRow(
+                    req.eventId(),
+                    req.eventTime(),
+                    receivedTime,
+                    req.machineId(),
+                    req.durationMs(),
+                    req.defectCount(),
+                    req.factoryId(),
+                    req.lineId(),
+                    payloadHash);
+
+        } catch (EventValidationException ve) {
+            tally.reject(req != null ? req.eventId() : null, ve.reason, ve.getMessage());
+        } catch (Exception e) {
+            tally.reject(req != null ? req.eventId() : null, RejectReason.UNEXPECTED, "Unexpected error: " + e.getMessage());
+        }
+        return null;
+    }
+
+    private void upsert(List<EventRow> batch, BatchTally tally) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long dedupeStart = System.nanoTime();
+        // repeated eventIds are resolved here (last copy wins, as in ingest_events) so
+        // only one copy of each goes to the database
+        List<EventRow> collapsed = EventIdIndex.collapse(batch);
+        tally.collapsed(batch.size() - collapsed.size());
+
+        // exact resends of a version this instance committed need no round trip
+        List<EventRow> validEvents = knownEventIds.dropKnownDuplicates(collapsed);
+        tally.add(new Classification(0, collapsed.size() - validEvents.size(), 0));
+        long writeStart = System.nanoTime();
+        ingestMetrics.stage(IngestMetrics.Stage.DEDUPE, writeStart - dedupeStart);
+        if (validEvents.isEmpty()) {
+            return;
+        }
+
+        // the statement reports insert / update / no-op per row; small batches may be
+        // group-committed with other requests' events when write-behind is enabled, or every
+        // write is split over the single-writer shards when sharding is enabled
+        Set<String> machineIds = new HashSet<>();
+        for (EventRow e : validEvents) {
+            machineIds.add(e.machineId());
+        }
+
+        UpsertOutcome[] outcomes = null;
+        SlidingWindowStats.WriteTicket ticket = slidingWindowStats.beginWrite(machineIds);
+        try {
+            outcomes = shardedIngestDispatcher.isEnabled()
+                    ? shardedIngestDispatcher.upsert(validEvents)
+                    : writeBehindBuffer.upsert(validEvents);
+            ingestMetrics.stage(IngestMetrics.Stage.WRITE, System.nanoTime() - writeStart);
+        } finally {
+            // committed inserts go to the in-memory stats window and evict overlapping cached
+            // stats, null outcomes = failed write
+            slidingWindowStats.endWrite(ticket, validEvents, outcomes);
+            statsCache.afterWrite(validEvents, outcomes);
+            knownEventIds.afterWrite(validEvents, outcomes);
+        }
+        tally.add(classify(outcomes));
+        rejectFailed(validEvents, outcomes, tally);
+    }
+
+    // chunked upserts with commit-per-chunk: the rows of a failed chunk were not written
+    private static void rejectFailed(List<EventRow> events, UpsertOutcome[] outcomes, BatchTally tally) {
+        for (int i = 0; i < outcomes.length; i++) {
+            if (outcomes[i] == UpsertOutcome.FAILED) {
+                tally.reject(events.get(i).eventId(), RejectReason.WRITE_FAILED, "Write failed, send the event again");
             }
         }
+    }
+
+    /**
+     * INSERTED -> accepted, UPDATED -> updated, SKIPPED (same payload or stale update) -> deduped.
+     * FAILED rows are not counted here, they are rejections.
+     */
+    static Classification classify(UpsertOutcome[] outcomes) {
+        int accepted = 0;
+        int deduped = 0;
+        int updated = 0;
 
-        return BatchResponse.builder()
-                .accepted(accepted)
-                .deduped(deduped)
-                .updated(updated)
-                .rejected(rejected)
-                .rejections(rejections)
-                .build();
+        for (UpsertOutcome outcome : outcomes) {
+            switch (outcome) {
+                case INSERTED -> accepted++;
+                case UPDATED -> updated++;
+                case SKIPPED -> deduped++;
+            }
+        }
+        return new Classification(accepted, deduped, updated);
+    }
+
+    record Classification(int accepted, int deduped, int updated) {
     }
 
-    private void validateEvent(EventRequest eventRequest) {
+    void validateEvent(EventRequest eventRequest) {
+        validateEvent(eventRequest, Instant.now());
+    }
+
+    void validateEvent(EventRequest eventRequest, Instant now) {
         if (eventRequest == null) {
-            throw new ValidationException("event is null");
+            throw new EventValidationException(RejectReason.MISSING_FIELD, "event is null");
         }
 
-        Instant now = Instant.now();
+        // same rules as the EventRequest annotations, streamed events skip bean validation
+        if (eventRequest.eventId() == null || eventRequest.eventId().isBlank()) {
+            throw new EventValidationException(RejectReason.MISSING_FIELD, "event id is required");
+        }
+        if (eventRequest.eventTime() == null) {
+            throw new EventValidationException(RejectReason.MISSING_FIELD, "event time is required");
+        }
+        if (eventRequest.machineId() == null || eventRequest.machineId().isBlank()) {
+            throw new EventValidationException(RejectReason.MISSING_FIELD, "machine id is required");
+        }
+        if (eventRequest.durationMs() == null) {
+            throw new EventValidationException(RejectReason.MISSING_FIELD, "durationMs is required");
+        }
+        if (eventRequest.defectCount() == null) {
+            throw new EventValidationException(RejectReason.MISSING_FIELD, "defectCount is required");
+        }
 
-        if (eventRequest.eventTime().isAfter(now.plus(Duration.ofMinutes(MAX_FUTURE_MINUTES)))) {
-            throw new ValidationException(
+        if (isTooFarInFuture(eventRequest.eventTime(), now)) {
+            throw new EventValidationException(RejectReason.FUTURE_EVENT_TIME,
                     String.format("eventTime is more than %d minutes in the future", MAX_FUTURE_MINUTES)
             );
         }
 
         long duration = eventRequest.durationMs();
         if (duration < 0 || duration > MAX_DURATION_MS) {
-            throw new ValidationException(
+            throw new EventValidationException(RejectReason.INVALID_DURATION,
                     String.format("Invalid durationMs: must be between 0 and %d", MAX_DURATION_MS)
             );
         }
     }
+
+    // eventTime.isAfter(now.plus(MAX_FUTURE_MINUTES)) without allocating an Instant per event
+    private static boolean isTooFarInFuture(Instant eventTime, Instant now) {
+        long limitSecond = now.getEpochSecond() + MAX_FUTURE_MINUTES * 60;
+        return eventTime.getEpochSecond() > limitSecond
+                || (eventTime.getEpochSecond() == limitSecond && eventTime.getNano() > now.getNano());
+    }
 }
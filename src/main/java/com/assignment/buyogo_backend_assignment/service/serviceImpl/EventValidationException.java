@@ -0,0 +1,17 @@
+package com.assignment.buyogo_backend_assignment.service.serviceImpl;
+
+import com.assignment.buyogo_backend_assignment.exception.ValidationException;
+
+/**
+ * A single event failed validation; the message goes into the rejection details, the
+ * reason into the rejection metrics.
+ */
+class EventValidationException extends ValidationException {
+
+    final RejectReason reason;
+
+    EventValidationException(RejectReason reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+}
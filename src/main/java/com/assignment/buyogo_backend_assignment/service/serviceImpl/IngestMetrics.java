@@ -0,0 +1,108 @@
+package com.assignment.buyogo_backend_assignment.service.serviceImpl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters of the ingest path. Every tag combination is registered up front, so recording
+ * only indexes a field or an array: no tag lists or meter lookups per request.
+ *
+ * Timers publish histogram buckets, so p50/p99 can be aggregated across instances in
+ * Prometheus instead of being fixed per instance.
+ */
+@Component
+@RequiredArgsConstructor
+class IngestMetrics {
+
+    enum Path {
+        BATCH, PIPELINED, STREAM
+    }
+
+    enum Stage {
+        // validate + hash
+        PREPARE,
+        // in-request collapse + known-id drop
+        DEDUPE,
+        // upsert, including write-behind / shard queueing
+        WRITE
+    }
+
+    private final MeterRegistry meterRegistry;
+
+    private final Timer[] requests = new Timer[Path.values().length];
+    private final Timer[] stages = new Timer[Stage.values().length];
+    private final Counter[] rejected = new Counter[RejectReason.ALL.length];
+    private Counter accepted;
+    private Counter deduped;
+    private Counter collapsed;
+    private Counter updated;
+
+    @PostConstruct
+    void register() {
+        for (Path path : Path.values()) {
+            requests[path.ordinal()] = timer("events.ingest.request", "Time to process one ingest request", "path", path);
+        }
+        for (Stage stage : Stage.values()) {
+            stages[stage.ordinal()] = timer("events.ingest.stage", "Time spent in one ingest stage of a request or chunk", "stage", stage);
+        }
+        accepted = outcome("accepted");
+        deduped = outcome("deduped");
+        collapsed = outcome("collapsed");
+        updated = outcome("updated");
+        for (RejectReason reason : RejectReason.ALL) {
+            rejected[reason.ordinal()] = Counter.builder("events.ingest.rejected")
+                    .description("Events rejected, by reason")
+                    .tag("reason", reason.tag)
+                    .register(meterRegistry);
+        }
+    }
+
+    private Timer timer(String name, String description, String tag, Enum<?> value) {
+        return Timer.builder(name)
+                .description(description)
+                .tag(tag, value.name().toLowerCase())
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(100_000))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(meterRegistry);
+    }
+
+    private Counter outcome(String outcome) {
+        return Counter.builder("events.ingest.events")
+                .description("Valid events ingested, by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    void request(Path path, long startNanos) {
+        requests[path.ordinal()].record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void stage(Stage stage, long nanos) {
+        stages[stage.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void events(int accepted, int deduped, int collapsed, int updated) {
+        increment(this.accepted, accepted);
+        increment(this.deduped, deduped);
+        increment(this.collapsed, collapsed);
+        increment(this.updated, updated);
+    }
+
+    void rejected(RejectReason reason, int count) {
+        increment(rejected[reason.ordinal()], count);
+    }
+
+    private static void increment(Counter counter, int count) {
+        if (count > 0) {
+            counter.increment(count);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.assignment.buyogo_backend_assignment.service.serviceImpl;
+
+import com.assignment.buyogo_backend_assignment.repository.EventBulkRepository;
+import com.assignment.buyogo_backend_assignment.repository.EventKey;
+import com.assignment.buyogo_backend_assignment.repository.EventRow;
+import com.assignment.buyogo_backend_assignment.repository.UpsertOutcome;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bounded cache of eventId -> (payloadHash, receivedTime) as last committed by this instance,
+ * so exact resends are counted as deduped without a database round trip. Same hash means
+ * deduped whatever the receivedTime, so a hit needs no other check; anything else still goes
+ * to ingest_events.
+ *
+ * Entries are written after commit and only replaced by a newer receivedTime, the same rule
+ * the upsert applies, so two batches finishing out of order cannot leave the older version.
+ * Only writes made by this instance are seen: with several instances writing the same ids,
+ * a resend of a version another instance has replaced would be dropped, so this stays off
+ * unless one instance owns ingestion.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+class KnownEventIds {
+
+    private final EventBulkRepository eventBulkRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${events.ingest.known-ids.enabled:false}")
+    private boolean enabled = false;
+
+    @Value("${events.ingest.known-ids.max-entries:1000000}")
+    private long maxEntries = 1_000_000;
+
+    // most recently received keys loaded at startup, 0 = start empty
+    @Value("${events.ingest.known-ids.warm-up-size:100000}")
+    private int warmUpSize = 100_000;
+
+    private Cache<String, KnownVersion> versions;
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            return;
+        }
+        versions = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .recordStats()
+                .build();
+        // cache.gets{result=hit|miss}, cache.evictions, cache.size
+        CaffeineCacheMetrics.monitor(meterRegistry, versions, "ingest.known-ids");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!enabled || warmUpSize <= 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        List<EventKey> keys = eventBulkRepository.findRecentKeys((int) Math.min(warmUpSize, maxEntries));
+        for (EventKey key : keys) {
+            remember(key.eventId(), key.payloadHash(), key.receivedTime());
+        }
+        log.info("Loaded {} known event ids in {} ms", keys.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Returns the events whose stored version is not known to have the same payload, in
+     * order; the input list itself when none is dropped.
+     */
+    List<EventRow> dropKnownDuplicates(List<EventRow> events) {
+        if (!enabled || events.isEmpty()) {
+            return events;
+        }
+        List<EventRow> remaining = null;
+        for (int i = 0; i < events.size(); i++) {
+            EventRow e = events.get(i);
+            KnownVersion known = versions.getIfPresent(e.eventId());
+            boolean duplicate = known != null && known.payloadHash().equals(e.payloadHash());
+            if (duplicate && remaining == null) {
+                remaining = new ArrayList<>(events.subList(0, i));
+            } else if (!duplicate && remaining != null) {
+                remaining.add(e);
+            }
+        }
+        return remaining != null ? remaining : events;
+    }
+
+    /**
+     * Records what the committed batch stored. outcomes is null when the write failed part
+     * way; those ids are forgotten since it is unknown what was stored.
+     */
+    void afterWrite(List<EventRow> events, UpsertOutcome[] outcomes) {
+        if (!enabled) {
+            return;
+        }
+        for (int i = 0; i < events.size(); i++) {
+            EventRow e = events.get(i);
+            UpsertOutcome outcome = outcomes != null ? outcomes[i] : null;
+            if (outcome == null) {
+                versions.invalidate(e.eventId());
+            } else if (outcome == UpsertOutcome.INSERTED || outcome == UpsertOutcome.UPDATED) {
+                remember(e.eventId(), e.payloadHash(), e.receivedTime());
+            }
+        }
+    }
+
+    void invalidateAll() {
+        if (enabled) {
+            versions.invalidateAll();
+        }
+    }
+
+    private void remember(String eventId, String payloadHash, Instant receivedTime) {
+        versions.asMap().merge(eventId, new KnownVersion(payloadHash, receivedTime),
+                (current, next) -> next.receivedTime().isAfter(current.receivedTime()) ? next : current);
+    }
+
+    private record KnownVersion(String payloadHash, Instant receivedTime) {
+    }
+}
@@ -0,0 +1,23 @@
+package com.assignment.buyogo_backend_assignment.service.serviceImpl;
+
+/**
+ * Why an event was rejected, as a fixed set so it can be a metric tag.
+ */
+enum RejectReason {
+    MISSING_FIELD("missing_field"),
+    FUTURE_EVENT_TIME("future_event_time"),
+    INVALID_DURATION("invalid_duration"),
+    MALFORMED("malformed"),
+    // valid, but its chunk of a chunked upsert failed
+    WRITE_FAILED("write_failed"),
+    UNEXPECTED("unexpected");
+
+    // values() copies the array on every call
+    static final RejectReason[] ALL = values();
+
+    final String tag;
+
+    RejectReason(String tag) {
+        this.tag = tag;
+    }
+}
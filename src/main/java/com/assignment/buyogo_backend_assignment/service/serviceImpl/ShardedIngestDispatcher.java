@@ -0,0 +1,280 @@
+package com.assignment.buyogo_backend_assignment.service.serviceImpl;
+
+import com.assignment.buyogo_backend_assignment.exception.IngestBufferFullException;
+import com.assignment.buyogo_backend_assignment.repository.EventBulkRepository;
+import com.assignment.buyogo_backend_assignment.repository.EventRow;
+import com.assignment.buyogo_backend_assignment.repository.UpsertOutcome;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routes events into N single-writer shards by machineId (or eventId). Each shard has its
+ * own queue and one writer thread, so it holds at most one pooled connection, and events
+ * for the same key are always written by the same thread, one flush at a time. Concurrent
+ * requests for the same machine (and its machine_hourly_stats rows) or the same eventId
+ * queue up in memory instead of waiting on each other's row locks.
+ *
+ * A request's events are split over the shards and the request waits for all of them; the
+ * outcomes are put back in request order. The caller collapses repeated eventIds first,
+ * so a request never sends two copies of one id to different shards; copies from different
+ * requests are never merged into one shard write. The shards commit separately:
+ * if one fails the request gets the error, but other shards' events may already be
+ * committed (a retry of the same batch is deduped).
+ */
+@Component
+@RequiredArgsConstructor
+class ShardedIngestDispatcher {
+
+    private static final long IDLE_POLL_MS = 100;
+
+    private final EventBulkRepository eventBulkRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${events.ingest.sharding.enabled:false}")
+    private boolean enabled = false;
+
+    @Value("${events.ingest.sharding.shards:4}")
+    private int shardCount = 4;
+
+    // machine-id or event-id
+    @Value("${events.ingest.sharding.key:machine-id}")
+    private String shardKey = "machine-id";
+
+    // max events queued or being written per shard
+    @Value("${events.ingest.sharding.capacity:20000}")
+    private int capacity = 20_000;
+
+    // a shard writes whatever is queued, up to this many events per flush
+    @Value("${events.ingest.sharding.flush-size:5000}")
+    private int flushSize = 5000;
+
+    @Value("${events.ingest.sharding.enqueue-timeout-ms:0}")
+    private long enqueueTimeoutMs = 0;
+
+    private Shard[] shards;
+    private boolean byMachine;
+    private volatile boolean running;
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        if (shardCount < 1) {
+            throw new IllegalStateException("events.ingest.sharding.shards must be >= 1");
+        }
+        byMachine = switch (shardKey) {
+            case "machine-id" -> true;
+            case "event-id" -> false;
+            default -> throw new IllegalStateException("events.ingest.sharding.key must be machine-id or event-id");
+        };
+
+        running = true;
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i);
+        }
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (shards == null) {
+            return;
+        }
+        // writers drain their queues before they exit
+        running = false;
+        for (Shard shard : shards) {
+            shard.writer.join(TimeUnit.SECONDS.toMillis(30));
+            shard.failPending(new IllegalStateException("ingest shards stopped"));
+        }
+    }
+
+    boolean isEnabled() {
+        return running;
+    }
+
+    /**
+     * Upserts the events through their shards and returns the outcomes in request order.
+     */
+    UpsertOutcome[] upsert(List<EventRow> events) {
+        // split by shard, remembering each event's position in the request
+        List<List<EventRow>> parts = new ArrayList<>(shards.length);
+        List<List<Integer>> positions = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            parts.add(new ArrayList<>());
+            positions.add(new ArrayList<>());
+        }
+        for (int i = 0; i < events.size(); i++) {
+            EventRow e = events.get(i);
+            int shard = shardOf(byMachine ? e.machineId() : e.eventId());
+            parts.get(shard).add(e);
+            positions.get(shard).add(i);
+        }
+
+        // take room in every shard before queueing anything, so a full shard rejects the whole request
+        List<Shard> acquired = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            int n = parts.get(i).size();
+            if (n == 0) {
+                continue;
+            }
+            if (!shards[i].acquire(n)) {
+                for (Shard shard : acquired) {
+                    shard.release(parts.get(shard.index).size());
+                }
+                throw new IngestBufferFullException("Ingestion shard " + i + " is full, retry later");
+            }
+            acquired.add(shards[i]);
+        }
+
+        List<CompletableFuture<UpsertOutcome[]>> results = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            results.add(parts.get(i).isEmpty()
+                    ? CompletableFuture.completedFuture(new UpsertOutcome[0])
+                    : shards[i].submit(parts.get(i)));
+        }
+
+        UpsertOutcome[] outcomes = new UpsertOutcome[events.size()];
+        RuntimeException failure = null;
+        for (int i = 0; i < shards.length; i++) {
+            try {
+                UpsertOutcome[] part = results.get(i).join();
+                List<Integer> pos = positions.get(i);
+                for (int j = 0; j < part.length; j++) {
+                    outcomes[pos.get(j)] = part[j];
+                }
+            } catch (CompletionException e) {
+                // keep waiting for the other shards so the request returns after all of them finished
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException cause ? cause : e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return outcomes;
+    }
+
+    private int shardOf(String key) {
+        return Math.floorMod(key.hashCode(), shards.length);
+    }
+
+    private final class Shard {
+
+        private final int index;
+        private final SubmissionQueue queue = new SubmissionQueue(flushSize);
+        private final Semaphore permits = new Semaphore(capacity);
+        private final Thread writer;
+
+        private final Timer flushTimer;
+        private final Counter writtenEvents;
+        private final Counter rejectedRequests;
+
+        Shard(int index) {
+            this.index = index;
+            Tags tags = Tags.of("shard", String.valueOf(index));
+            Gauge.builder("events.ingest.shard.pending", () -> capacity - permits.availablePermits())
+                    .description("Events queued or being written by the shard")
+                    .tags(tags)
+                    .register(meterRegistry);
+            flushTimer = Timer.builder("events.ingest.shard.flush")
+                    .description("Time spent in one shard write")
+                    .tags(tags)
+                    .register(meterRegistry);
+            writtenEvents = Counter.builder("events.ingest.shard.events")
+                    .description("Events written by the shard")
+                    .tags(tags)
+                    .register(meterRegistry);
+            rejectedRequests = Counter.builder("events.ingest.shard.rejected")
+                    .description("Requests turned away because the shard was full")
+                    .tags(tags)
+                    .register(meterRegistry);
+
+            writer = new Thread(this::run, "event-shard-" + index);
+            writer.setDaemon(true);
+            writer.start();
+        }
+
+        // a request larger than the whole shard takes all of it instead of waiting forever
+        boolean acquire(int count) {
+            boolean acquired;
+            try {
+                acquired = enqueueTimeoutMs > 0
+                        ? permits.tryAcquire(Math.min(count, capacity), enqueueTimeoutMs, TimeUnit.MILLISECONDS)
+                        : permits.tryAcquire(Math.min(count, capacity));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                acquired = false;
+            }
+            if (!acquired) {
+                rejectedRequests.increment();
+            }
+            return acquired;
+        }
+
+        void release(int count) {
+            permits.release(Math.min(count, capacity));
+        }
+
+        CompletableFuture<UpsertOutcome[]> submit(List<EventRow> events) {
+            SubmissionQueue.Submission submission = new SubmissionQueue.Submission(events);
+            queue.add(submission);
+            if (!running) {
+                // lost the race with stop(), the writer may never see it
+                failPending(new IllegalStateException("ingest shards stopped"));
+            }
+            return submission.result();
+        }
+
+        private void run() {
+            while (running || queue.hasPending()) {
+                try {
+                    // no waiting for more: whatever queued up during the previous write goes together
+                    List<SubmissionQueue.Submission> group = queue.nextGroup(IDLE_POLL_MS, 0);
+                    if (group != null) {
+                        write(group);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        private void write(List<SubmissionQueue.Submission> group) {
+            long start = System.nanoTime();
+            try {
+                writtenEvents.increment(SubmissionQueue.write(group, eventBulkRepository::bulkUpsert));
+            } finally {
+                flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                for (SubmissionQueue.Submission submission : group) {
+                    release(submission.events().size());
+                }
+            }
+        }
+
+        private void failPending(RuntimeException cause) {
+            SubmissionQueue.Submission submission;
+            while ((submission = queue.poll()) != null) {
+                submission.result().completeExceptionally(cause);
+                release(submission.events().size());
+            }
+        }
+    }
+}
@@ -0,0 +1,398 @@
+package com.assignment.buyogo_backend_assignment.service.serviceImpl;
+
+import com.assignment.buyogo_backend_assignment.repository.EventRepository;
+import com.assignment.buyogo_backend_assignment.repository.EventRow;
+import com.assignment.buyogo_backend_assignment.repository.MachineBucketTotals;
+import com.assignment.buyogo_backend_assignment.repository.StatsTotals;
+import com.assignment.buyogo_backend_assignment.repository.UpsertOutcome;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-process per-machine event counts and defect sums for recent windows ("last 1h / 24h"),
+ * so dashboard polls of /api/v1/stats do not go to the database.
+ *
+ * Each tracked machine has a ring of fixed-width time buckets covering history-hours back
+ * and the accepted future skew ahead. A machine is loaded from events on its first query
+ * and then kept current from committed inserts. Whole buckets of a query are answered from
+ * the ring; a partial bucket at either edge is read from events, but only if the ring
+ * says it holds events. At most max-machines are tracked, least recently queried ones
+ * are evicted.
+ *
+ * Only writes that go through this process are seen, so this is for single-instance
+ * deployments. An update does not report the row it replaced (which may have had another
+ * machine or bucket), so any update drops all windows and they reload on the next query.
+ * Returns null whenever it cannot answer exactly, and the caller falls back to the database.
+ */
+@Component
+@RequiredArgsConstructor
+class SlidingWindowStats {
+
+    // loads of machines in the same stripe are discarded while a write to the stripe is in flight
+    private static final int WRITE_STRIPES = 64;
+
+    private final EventRepository eventRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${events.stats.window.enabled:false}")
+    private boolean enabled = false;
+
+    @Value("${events.stats.window.bucket-seconds:60}")
+    private long bucketSeconds = 60;
+
+    @Value("${events.stats.window.history-hours:24}")
+    private int historyHours = 24;
+
+    @Value("${events.stats.window.max-machines:1000}")
+    private int maxMachines = 1000;
+
+    private final int[] writesInFlight = new int[WRITE_STRIPES];
+    private final long[] writeSequence = new long[WRITE_STRIPES];
+    private long epoch;
+    private Map<String, MachineWindow> windows;
+
+    private int historyBuckets;
+    private int futureBuckets;
+    private Counter memoryHits;
+    private Counter databaseFallbacks;
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            return;
+        }
+        if (bucketSeconds <= 0 || historyHours <= 0 || maxMachines <= 0) {
+            throw new IllegalStateException("events.stats.window bucket-seconds, history-hours and max-machines must be > 0");
+        }
+        // +1: the bucket holding "now - history" is only partly inside the history
+        historyBuckets = (int) ceilDiv(historyHours * 3600L, bucketSeconds) + 1;
+        // events may be up to MAX_FUTURE_MINUTES ahead of the clock, +1 for clock drift between checks
+        futureBuckets = (int) ceilDiv(EventServiceImpl.MAX_FUTURE_MINUTES * 60, bucketSeconds) + 1;
+
+        // insertion order, moved to the end on query, so the eldest entry is the least recently queried
+        windows = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, MachineWindow> eldest) {
+                return size() > maxMachines;
+            }
+        };
+
+        memoryHits = Counter.builder("events.stats.window.queries")
+                .description("Stats queries answered by the in-memory window")
+                .tag("result", "memory")
+                .register(meterRegistry);
+        databaseFallbacks = Counter.builder("events.stats.window.queries")
+                .description("Stats queries answered by the in-memory window")
+                .tag("result", "database")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Totals of [start, end) for the machine, or null if the window cannot answer it
+     * (disabled, range older than the history, or the machine could not be loaded now).
+     */
+    StatsTotals sum(String machineId, Instant start, Instant end) {
+        if (!enabled || !start.isBefore(end)) {
+            return null;
+        }
+
+        MachineWindow window = lookup(machineId);
+        if (window == null) {
+            window = load(machineId);
+        }
+        Plan plan = window != null ? window.plan(start, end, currentBucket()) : null;
+        if (plan == null) {
+            databaseFallbacks.increment();
+            return null;
+        }
+        memoryHits.increment();
+
+        if (plan.edgeStart() == null && plan.tailStart() == null) {
+            return new WindowTotals(plan.eventsCount(), plan.defectsCount());
+        }
+        Instant s1 = plan.edgeStart() != null ? plan.edgeStart() : start;
+        Instant e1 = plan.edgeStart() != null ? plan.edgeEnd() : start;
+        Instant s2 = plan.tailStart() != null ? plan.tailStart() : end;
+        Instant e2 = plan.tailStart() != null ? plan.tailEnd() : end;
+        StatsTotals edges = eventRepository.sumMachineStatsInRanges(machineId, s1, e1, s2, e2);
+        return new WindowTotals(plan.eventsCount() + edges.getEventsCount(),
+                plan.defectsCount() + edges.getDefectsCount());
+    }
+
+    /**
+     * Must be called before events of these machines are written, and endWrite with the
+     * returned ticket after the write finished (committed or failed).
+     */
+    WriteTicket beginWrite(Collection<String> machineIds) {
+        if (!enabled) {
+            return null;
+        }
+        Set<Integer> stripes = new HashSet<>();
+        for (String machineId : machineIds) {
+            if (machineId != null) {
+                stripes.add(stripeOf(machineId));
+            }
+        }
+        synchronized (this) {
+            for (int stripe : stripes) {
+                writesInFlight[stripe]++;
+                writeSequence[stripe]++;
+            }
+        }
+        return new WriteTicket(stripes);
+    }
+
+    /**
+     * Applies committed inserts to the tracked machines. outcomes is null when the write
+     * failed; those machines are dropped since it is not known what was committed.
+     */
+    void endWrite(WriteTicket ticket, List<EventRow> events, UpsertOutcome[] outcomes) {
+        if (ticket == null) {
+            return;
+        }
+        try {
+            if (outcomes == null) {
+                synchronized (this) {
+                    for (EventRow e : events) {
+                        windows.remove(e.machineId());
+                    }
+                }
+                return;
+            }
+            for (UpsertOutcome outcome : outcomes) {
+                if (outcome == UpsertOutcome.UPDATED) {
+                    invalidateAll();
+                    return;
+                }
+            }
+
+            long now = currentBucket();
+            for (int i = 0; i < outcomes.length; i++) {
+                if (outcomes[i] != UpsertOutcome.INSERTED) {
+                    continue;
+                }
+                EventRow e = events.get(i);
+                MachineWindow window;
+                synchronized (this) {
+                    window = windows.get(e.machineId());
+                }
+                if (window != null) {
+                    window.add(bucketOf(e.eventTime()), e.defectCount(), now);
+                }
+            }
+        } finally {
+            // after the inserts are applied, so a load that sees no write in flight misses nothing
+            synchronized (this) {
+                for (int stripe : ticket.stripes()) {
+                    writesInFlight[stripe]--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops every window, e.g. after rows were deleted or replaced outside the insert path.
+     */
+    synchronized void invalidateAll() {
+        if (!enabled) {
+            return;
+        }
+        epoch++;
+        windows.clear();
+    }
+
+    private synchronized MachineWindow lookup(String machineId) {
+        MachineWindow window = windows.remove(machineId);
+        if (window != null) {
+            windows.put(machineId, window);
+        }
+        return window;
+    }
+
+    /**
+     * Reads the machine's buckets from events. The result is only kept if no write to the
+     * machine's stripe was in flight at the start and none started while reading, so the
+     * snapshot holds exactly the writes that were applied before the window got registered.
+     */
+    private MachineWindow load(String machineId) {
+        int stripe = stripeOf(machineId);
+        long startEpoch;
+        long startSequence;
+        synchronized (this) {
+            if (writesInFlight[stripe] > 0) {
+                return null;
+            }
+            startEpoch = epoch;
+            startSequence = writeSequence[stripe];
+        }
+
+        long now = currentBucket();
+        MachineWindow window = new MachineWindow(historyBuckets + futureBuckets + 1);
+        List<MachineBucketTotals> rows = eventRepository.sumMachineStatsByBucket(
+                machineId, Instant.ofEpochSecond((now - historyBuckets) * bucketSeconds), bucketSeconds);
+        for (MachineBucketTotals row : rows) {
+            window.set(row.getBucket(), row.getEventsCount(), row.getDefectsCount());
+        }
+
+        synchronized (this) {
+            if (epoch != startEpoch || writeSequence[stripe] != startSequence) {
+                return null;
+            }
+            windows.put(machineId, window);
+        }
+        return window;
+    }
+
+    private static int stripeOf(String machineId) {
+        return Math.floorMod(machineId.hashCode(), WRITE_STRIPES);
+    }
+
+    private long currentBucket() {
+        return bucketOf(Instant.now());
+    }
+
+    private long bucketOf(Instant time) {
+        return Math.floorDiv(time.getEpochSecond(), bucketSeconds);
+    }
+
+    private boolean isBucketStart(Instant time) {
+        return time.getNano() == 0 && Math.floorMod(time.getEpochSecond(), bucketSeconds) == 0;
+    }
+
+    private Instant bucketStart(long bucket) {
+        return Instant.ofEpochSecond(bucket * bucketSeconds);
+    }
+
+    private static long ceilDiv(long x, long y) {
+        return -Math.floorDiv(-x, y);
+    }
+
+    /**
+     * Write stripes marked in flight by beginWrite.
+     */
+    record WriteTicket(Set<Integer> stripes) {
+    }
+
+    /**
+     * Whole-bucket totals of a query, plus up to two partial edge ranges that still have
+     * to be read from events (null when the edge is aligned or its bucket is empty).
+     */
+    private record Plan(long eventsCount, long defectsCount,
+                        Instant edgeStart, Instant edgeEnd, Instant tailStart, Instant tailEnd) {
+    }
+
+    private record WindowTotals(long eventsCount, long defectsCount) implements StatsTotals {
+        @Override
+        public long getEventsCount() {
+            return eventsCount;
+        }
+
+        @Override
+        public long getDefectsCount() {
+            return defectsCount;
+        }
+    }
+
+    /**
+     * Ring of buckets; a slot belongs to the bucket in buckets[slot], any other bucket
+     * mapping to the slot is empty. Slots are reused as time moves on.
+     */
+    private class MachineWindow {
+        private final long[] buckets;
+        private final int[] counts;
+        private final long[] defects;
+
+        MachineWindow(int size) {
+            buckets = new long[size];
+            counts = new int[size];
+            defects = new long[size];
+            Arrays.fill(buckets, Long.MIN_VALUE);
+        }
+
+        synchronized void add(long bucket, int defectCount, long now) {
+            if (bucket < now - historyBuckets || bucket > now + futureBuckets) {
+                return;
+            }
+            int slot = claim(bucket);
+            counts[slot]++;
+            defects[slot] += Math.max(defectCount, 0);
+        }
+
+        synchronized void set(long bucket, long count, long defectSum) {
+            int slot = claim(bucket);
+            counts[slot] = (int) count;
+            defects[slot] = defectSum;
+        }
+
+        synchronized Plan plan(Instant start, Instant end, long now) {
+            long first = bucketOf(start);
+            long last = bucketOf(end);
+            if (first < now - historyBuckets) {
+                return null;
+            }
+            boolean startAligned = isBucketStart(start);
+            boolean endAligned = isBucketStart(end);
+
+            long eventsCount = 0;
+            long defectsCount = 0;
+            // buckets past now + future hold nothing, events that far ahead are rejected
+            long lastWhole = Math.min(last - 1, now + futureBuckets);
+            for (long b = startAligned ? first : first + 1; b <= lastWhole; b++) {
+                int slot = slotOf(b);
+                if (buckets[slot] == b) {
+                    eventsCount += counts[slot];
+                    defectsCount += defects[slot];
+                }
+            }
+
+            Instant edgeStart = null;
+            Instant edgeEnd = null;
+            if (!startAligned && countOf(first, now) > 0) {
+                edgeStart = start;
+                edgeEnd = first == last ? end : bucketStart(first + 1);
+            }
+            Instant tailStart = null;
+            Instant tailEnd = null;
+            if (!endAligned && (first != last || startAligned) && countOf(last, now) > 0) {
+                tailStart = first == last ? start : bucketStart(last);
+                tailEnd = end;
+            }
+            return new Plan(eventsCount, defectsCount, edgeStart, edgeEnd, tailStart, tailEnd);
+        }
+
+        private int countOf(long bucket, long now) {
+            if (bucket > now + futureBuckets) {
+                return 0;
+            }
+            int slot = slotOf(bucket);
+            return buckets[slot] == bucket ? counts[slot] : 0;
+        }
+
+        private int claim(long bucket) {
+            int slot = slotOf(bucket);
+            if (buckets[slot] != bucket) {
+                buckets[slot] = bucket;
+                counts[slot] = 0;
+                defects[slot] = 0;
+            }
+            return slot;
+        }
+
+        private int slotOf(long bucket) {
+            return (int) Math.floorMod(bucket, (long) buckets.length);
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.assignment.buyogo_backend_assignment.service.serviceImpl;
+
+import com.assignment.buyogo_backend_assignment.repository.EventRow;
+import com.assignment.buyogo_backend_assignment.repository.UpsertOutcome;
+import com.assignment.buyogo_backend_assignment.request.DefectLineRanking;
+import com.assignment.buyogo_backend_assignment.request.StatsRequest;
+import com.assignment.buyogo_backend_assignment.response.DefectLineResponse;
+import com.assignment.buyogo_backend_assignment.response.StatsResponse;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache of /api/v1/stats and /top-defect-lines results, bounded by size and TTL.
+ *
+ * Committed batches remove only the entries they can change: a machine entry when an
+ * inserted event has its machine and an eventTime inside its range, a factory entry
+ * the same way for factory + line events. An update does not report the row it replaced
+ * (old machine / factory / time unknown), so it clears both caches.
+ *
+ * Cached keys are also indexed by machine / factory, so a batch only looks at the entries
+ * of its own machines and factories instead of every entry of both caches.
+ *
+ * A result computed while an overlapping batch was committing is returned but not
+ * stored, so an entry never outlives the write it missed. Only writes made by this
+ * instance invalidate; with several instances entries can be stale for up to the TTL.
+ */
+@Component
+@RequiredArgsConstructor
+class StatsCache {
+
+    // recent invalidations kept to check results that were being computed meanwhile
+    private static final int INVALIDATION_HISTORY = 256;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${events.stats.cache.enabled:false}")
+    private boolean enabled = false;
+
+    @Value("${events.stats.cache.max-entries:10000}")
+    private long maxEntries = 10_000;
+
+    @Value("${events.stats.cache.ttl-seconds:30}")
+    private long ttlSeconds = 30;
+
+    private Cache<StatsRequest, StatsResponse> machineStats;
+    private Cache<DefectLinesKey, List<DefectLineResponse>> defectLines;
+    private Counter invalidatedEntries;
+
+    // cached keys per machineId / factoryId, kept in step by put and the removal listeners
+    private final Map<String, Set<StatsRequest>> machineKeys = new ConcurrentHashMap<>();
+    private final Map<String, Set<DefectLinesKey>> factoryKeys = new ConcurrentHashMap<>();
+
+    private final Deque<Invalidation> invalidations = new ArrayDeque<>();
+    private long generation;
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            return;
+        }
+        machineStats = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .<StatsRequest, StatsResponse>removalListener((key, value, cause) ->
+                        unindex(machineStats, machineKeys, key.machineId(), key))
+                .build();
+        defectLines = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .<DefectLinesKey, List<DefectLineResponse>>removalListener((key, value, cause) ->
+                        unindex(defectLines, factoryKeys, key.factoryId(), key))
+                .build();
+
+        // cache.gets{result=hit|miss}, cache.evictions, cache.size per cache
+        CaffeineCacheMetrics.monitor(meterRegistry, machineStats, "stats.machine");
+        CaffeineCacheMetrics.monitor(meterRegistry, defectLines, "stats.defect-lines");
+        invalidatedEntries = Counter.builder("events.stats.cache.invalidated")
+                .description("Cached stats results removed because ingested events overlapped them")
+                .register(meterRegistry);
+    }
+
+    StatsResponse machineStats(StatsRequest request, Supplier<StatsResponse> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        StatsResponse cached = machineStats.getIfPresent(request);
+        if (cached != null) {
+            return cached;
+        }
+        long startGeneration = currentGeneration();
+        StatsResponse result = loader.get();
+        putIfNotInvalidated(machineStats, machineKeys, request, result, startGeneration,
+                request.machineId(), null, request.start(), request.end());
+        return result;
+    }
+
+    List<DefectLineResponse> defectLines(String factoryId, Instant from, Instant to, int limit,
+                                         DefectLineRanking rankBy, Supplier<List<DefectLineResponse>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        DefectLinesKey key = new DefectLinesKey(factoryId, from, to, limit, rankBy);
+        List<DefectLineResponse> cached = defectLines.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        long startGeneration = currentGeneration();
+        List<DefectLineResponse> result = List.copyOf(loader.get());
+        putIfNotInvalidated(defectLines, factoryKeys, key, result, startGeneration, null, factoryId, from, to);
+        return result;
+    }
+
+    /**
+     * Removes the entries the written batch can have changed. outcomes is null when the
+     * write failed part way; then every event of the batch is treated as written.
+     */
+    void afterWrite(List<EventRow> events, UpsertOutcome[] outcomes) {
+        if (!enabled) {
+            return;
+        }
+        Map<String, TimeRange> machines = new HashMap<>();
+        Map<String, TimeRange> factories = new HashMap<>();
+        for (int i = 0; i < events.size(); i++) {
+            UpsertOutcome outcome = outcomes != null ? outcomes[i] : UpsertOutcome.INSERTED;
+            if (outcome == UpsertOutcome.UPDATED) {
+                invalidateAll();
+                return;
+            }
+            if (outcome == UpsertOutcome.SKIPPED || outcome == UpsertOutcome.FAILED) {
+                continue;
+            }
+            EventRow e = events.get(i);
+            machines.merge(e.machineId(), TimeRange.of(e.eventTime()), TimeRange::span);
+            // rows without a line are not part of the defect-line ranking
+            if (e.factoryId() != null && e.lineId() != null) {
+                factories.merge(e.factoryId(), TimeRange.of(e.eventTime()), TimeRange::span);
+            }
+        }
+        if (machines.isEmpty()) {
+            return;
+        }
+
+        record(machines, factories, false);
+        int removed = 0;
+        for (Map.Entry<String, TimeRange> machine : machines.entrySet()) {
+            for (StatsRequest key : machineKeys.getOrDefault(machine.getKey(), Set.of())) {
+                if (machine.getValue().overlaps(key.start(), key.end()) && machineStats.asMap().remove(key) != null) {
+                    removed++;
+                }
+            }
+        }
+        for (Map.Entry<String, TimeRange> factory : factories.entrySet()) {
+            for (DefectLinesKey key : factoryKeys.getOrDefault(factory.getKey(), Set.of())) {
+                if (factory.getValue().overlaps(key.from(), key.to()) && defectLines.asMap().remove(key) != null) {
+                    removed++;
+                }
+            }
+        }
+        invalidatedEntries.increment(removed);
+    }
+
+    void invalidateAll() {
+        if (!enabled) {
+            return;
+        }
+        record(Map.of(), Map.of(), true);
+        invalidatedEntries.increment(machineStats.estimatedSize() + defectLines.estimatedSize());
+        machineStats.invalidateAll();
+        defectLines.invalidateAll();
+    }
+
+    private synchronized long currentGeneration() {
+        return generation;
+    }
+
+    private synchronized void record(Map<String, TimeRange> machines, Map<String, TimeRange> factories, boolean all) {
+        generation++;
+        invalidations.addLast(new Invalidation(generation, machines, factories, all));
+        if (invalidations.size() > INVALIDATION_HISTORY) {
+            invalidations.removeFirst();
+        }
+    }
+
+    /**
+     * Stores a result computed since startGeneration unless a write overlapping it was recorded
+     * meanwhile, and indexes its key. Check, put and index hold the lock of record(), so a write
+     * either is seen here or records after the put, and then its key sweep finds the entry.
+     */
+    private synchronized <K, V> void putIfNotInvalidated(Cache<K, V> cache, Map<String, Set<K>> index, K key, V value,
+                                                         long startGeneration, String machineId, String factoryId,
+                                                         Instant start, Instant end) {
+        if (!invalidatedSince(startGeneration, machineId, factoryId, start, end)) {
+            cache.put(key, value);
+            index.computeIfAbsent(machineId != null ? machineId : factoryId, id -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+    }
+
+    /**
+     * Drops a removed key from the index. Removal listeners run asynchronously, so the key
+     * may have been put again meanwhile; it stays indexed then.
+     */
+    private synchronized <K, V> void unindex(Cache<K, V> cache, Map<String, Set<K>> index, String id, K key) {
+        if (cache.asMap().containsKey(key)) {
+            return;
+        }
+        index.computeIfPresent(id, (ignored, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    /**
+     * True if an invalidation after startGeneration touches the machine (or factory) and range,
+     * or if too many happened to tell.
+     */
+    private synchronized boolean invalidatedSince(long startGeneration, String machineId, String factoryId,
+                                                  Instant start, Instant end) {
+        if (generation == startGeneration) {
+            return false;
+        }
+        if (invalidations.isEmpty() || invalidations.peekFirst().generation() > startGeneration + 1) {
+            return true;
+        }
+        for (Invalidation invalidation : invalidations) {
+            if (invalidation.generation() <= startGeneration) {
+                continue;
+            }
+            if (invalidation.all()) {
+                return true;
+            }
+            TimeRange range = machineId != null
+                    ? invalidation.machines().get(machineId)
+                    : invalidation.factories().get(factoryId);
+            if (range != null && range.overlaps(start, end)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private record DefectLinesKey(String factoryId, Instant from, Instant to, int limit, DefectLineRanking rankBy) {
+    }
+
+    private record Invalidation(long generation, Map<String, TimeRange> machines,
+                                Map<String, TimeRange> factories, boolean all) {
+    }
+
+    /**
+     * Smallest and largest eventTime written for one machine or factory.
+     */
+    private record TimeRange(Instant min, Instant max) {
+        static TimeRange of(Instant t) {
+            return new TimeRange(t, t);
+        }
+
+        static TimeRange span(TimeRange a, TimeRange b) {
+            return new TimeRange(a.min.isBefore(b.min) ? a.min : b.min, a.max.isAfter(b.max) ? a.max : b.max);
+        }
+
+        // queries are [start, end)
+        boolean overlaps(Instant start, Instant end) {
+            return !max.isBefore(start) && min.isBefore(end);
+        }
+    }
+}
@@ -1,91 +1,186 @@
 package com.assignment.buyogo_backend_assignment.service.serviceImpl;
 
+import com.assignment.buyogo_backend_assignment.exception.ValidationException;
+import com.assignment.buyogo_backend_assignment.repository.DefectLineTotals;
 import com.assignment.buyogo_backend_assignment.repository.EventRepository;
+import com.assignment.buyogo_backend_assignment.repository.MachineStatsRepository;
+import com.assignment.buyogo_backend_assignment.repository.MachineTotals;
+import com.assignment.buyogo_backend_assignment.repository.StatsTotals;
+import com.assignment.buyogo_backend_assignment.request.DefectLineRanking;
+import com.assignment.buyogo_backend_assignment.request.MachineStatsRequest;
 import com.assignment.buyogo_backend_assignment.request.StatsRequest;
 import com.assignment.buyogo_backend_assignment.response.DefectLineResponse;
 import com.assignment.buyogo_backend_assignment.response.StatsResponse;
 import com.assignment.buyogo_backend_assignment.response.Status;
 import com.assignment.buyogo_backend_assignment.service.StatsService;
-import lombok.AllArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.Duration;
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 @Service
-@AllArgsConstructor
+@RequiredArgsConstructor
 public class StatsServiceImpl implements StatsService {
     private final EventRepository eventRepository;
+    private final MachineStatsRepository machineStatsRepository;
+    private final SlidingWindowStats slidingWindowStats;
+    private final StatsCache statsCache;
+    private final MeterRegistry meterRegistry;
     private static final double HEALTHY_DEFECT_RATE_THRESHOLD = 2.0;
 
+    @Value("${events.stats.rollup.enabled:true}")
+    private boolean rollupEnabled = true;
+
+    // database queries only; cache and in-memory window hits have their own counters
+    private Timer machineRollupQueries;
+    private Timer machineRawQueries;
+    private Timer defectLinesQueries;
+    private Timer defectLinesPercentQueries;
+    private Timer machineListQueries;
+    private Timer factoryMachinesQueries;
+
+    @PostConstruct
+    void registerMetrics() {
+        machineRollupQueries = queryTimer("machine-rollup");
+        machineRawQueries = queryTimer("machine-raw");
+        defectLinesQueries = queryTimer("defect-lines");
+        defectLinesPercentQueries = queryTimer("defect-lines-percent");
+        machineListQueries = queryTimer("machines");
+        factoryMachinesQueries = queryTimer("factory-machines");
+    }
+
+    private Timer queryTimer(String query) {
+        return Timer.builder("events.stats.query")
+                .description("Time of one stats query against the database")
+                .tag("query", query)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(100_000))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(meterRegistry);
+    }
+
     @Override
     public StatsResponse getStats(StatsRequest statsRequest){
+        return statsCache.machineStats(statsRequest, () -> computeStats(statsRequest));
+    }
 
-        long eventsCount = eventRepository.countByMachineIdAndEventTimeBetween(
-                statsRequest.machineId(),
-                statsRequest.start(),
-                statsRequest.end()
-        );
+    private StatsResponse computeStats(StatsRequest statsRequest) {
+        // recent windows of hot machines come from memory when the window engine is enabled
+        StatsTotals totals = slidingWindowStats.sum(
+                statsRequest.machineId(), statsRequest.start(), statsRequest.end());
+        if (totals != null) {
+            return toResponse(statsRequest.machineId(), statsRequest.start(), statsRequest.end(),
+                    totals.getEventsCount(), totals.getDefectsCount());
+        }
+        // the same statement as the multi-machine endpoint, with one machine
+        long start = System.nanoTime();
+        StatsResponse[] response = new StatsResponse[1];
+        sumByMachines(List.of(statsRequest.machineId()), statsRequest.start(), statsRequest.end(),
+                machine -> response[0] = machine);
+        (rollupEnabled ? machineRollupQueries : machineRawQueries).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return response[0];
+    }
 
-        long defectsCount = eventRepository.sumDefectsByMachineIdAndEventTimeBetween(
-                statsRequest.machineId(),
-                statsRequest.start(),
-                statsRequest.end()
-        );
+    /**
+     * One grouped statement for all machines; each machine's stats go to the sink as soon as
+     * its row is read. Listed machines come back in request order (unknown ones with zero
+     * counts), a factory's machines in machineId order.
+     */
+    @Override
+    public void streamMachineStats(MachineStatsRequest request, Consumer<StatsResponse> sink) {
+        long start = System.nanoTime();
+        if (request.factoryId() != null) {
+            machineStatsRepository.sumByFactory(request.factoryId(), request.start(), request.end(),
+                    totals -> sink.accept(toResponse(request.start(), request.end(), totals)));
+            factoryMachinesQueries.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return;
+        }
+        sumByMachines(List.copyOf(new LinkedHashSet<>(request.machineIds())), request.start(), request.end(), sink);
+        machineListQueries.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
 
-        double windowHours = Duration.between(statsRequest.start(), statsRequest.end()).toSeconds() / 3600.0;
+    /**
+     * Splits [start, end) into whole UTC hours, answered by the rollup table, and the
+     * partial hours at both edges, answered by raw events. Windows shorter than one
+     * whole hour, and every window when the rollup is disabled, are read from raw events only.
+     */
+    private void sumByMachines(List<String> machineIds, Instant start, Instant end, Consumer<StatsResponse> sink) {
+        Instant fullStart = start.truncatedTo(ChronoUnit.HOURS);
+        if (fullStart.isBefore(start)) {
+            fullStart = fullStart.plus(1, ChronoUnit.HOURS);
+        }
+        Instant fullEnd = end.truncatedTo(ChronoUnit.HOURS);
+        if (!rollupEnabled || !fullStart.isBefore(fullEnd)) {
+            fullStart = end;
+            fullEnd = end;
+        }
+
+        machineStatsRepository.sumByMachines(machineIds, start, end, fullStart, fullEnd,
+                totals -> sink.accept(toResponse(start, end, totals)));
+    }
+
+    private static StatsResponse toResponse(Instant start, Instant end, MachineTotals totals) {
+        return toResponse(totals.machineId(), start, end, totals.eventsCount(), totals.defectsCount());
+    }
+
+    private static StatsResponse toResponse(String machineId, Instant start, Instant end, long eventsCount, long defectsCount) {
+        double windowHours = Duration.between(start, end).toSeconds() / 3600.0;
         double avgDefectRate= windowHours >0 ? defectsCount/windowHours : 0.0;
 
         Status status =  avgDefectRate < HEALTHY_DEFECT_RATE_THRESHOLD ? Status.Healthy :Status.Warning;
 
-
         return StatsResponse.builder()
                 .eventsCount(eventsCount)
                 .defectsCount(defectsCount)
                 .avgDefectRate(avgDefectRate)
-                .end(statsRequest.end())
-                .start(statsRequest.start())
-                .machineId(statsRequest.machineId())
+                .end(end)
+                .start(start)
+                .machineId(machineId)
                 .status(status)
                 .build();
     }
 
     @Override
-    public List<DefectLineResponse> getDefectsLine(String factoryId, Instant from, Instant to, int limit){
-        List<Object []>  results= eventRepository
-                .findTopDefectLinesByFactoryIdAndEventTimeBetween(factoryId, from, to);
-
-        return results
-                .stream()
-                .limit(limit)
-                .map(row ->{
-                    String lineId = row[0].toString();
-                    long totalDefects= ((Number)row[1]).longValue();
-                    long eventsCount = ((Number)row[2]).longValue();
-
-                    double defectPercentage= eventsCount >0
-                            ? BigDecimal.valueOf(totalDefects)
-                                .divide(BigDecimal.valueOf(eventsCount),4, RoundingMode.HALF_UP)
-                                .multiply(BigDecimal.valueOf(100))
-                                .setScale(2,RoundingMode.HALF_UP)
-                                .doubleValue()
-
-                            : 0.0;
-
-                     return DefectLineResponse.builder()
-                            .defectsPercent(defectPercentage)
-                            .totalDefects(totalDefects)
-                            .eventCount(eventsCount)
-                            .lineId(lineId)
-                            .build();
-
-                })
-                .collect(Collectors.toList());
+    public List<DefectLineResponse> getDefectsLine(String factoryId, Instant from, Instant to, int limit,
+                                                   DefectLineRanking rankBy){
+        if (limit < 1) {
+            throw new ValidationException("limit must be at least 1");
+        }
+        return statsCache.defectLines(factoryId, from, to, limit, rankBy,
+                () -> queryDefectLines(factoryId, from, to, limit, rankBy));
+    }
+
+    private List<DefectLineResponse> queryDefectLines(String factoryId, Instant from, Instant to, int limit,
+                                                      DefectLineRanking rankBy) {
+        long start = System.nanoTime();
+        List<DefectLineTotals> rows = rankBy == DefectLineRanking.PERCENT
+                ? eventRepository.findTopDefectLinesByDefectsPercent(factoryId, from, to, limit)
+                : eventRepository.findTopDefectLinesByTotalDefects(factoryId, from, to, limit);
+        (rankBy == DefectLineRanking.PERCENT ? defectLinesPercentQueries : defectLinesQueries)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        List<DefectLineResponse> lines = new ArrayList<>(rows.size());
+        for (DefectLineTotals row : rows) {
+            lines.add(DefectLineResponse.builder()
+                    .lineId(row.getLineId())
+                    .totalDefects(row.getTotalDefects())
+                    .eventCount(row.getEventCount())
+                    .defectsPercent(row.getDefectsPercent())
+                    .build());
+        }
+        return lines;
     }
 
 }
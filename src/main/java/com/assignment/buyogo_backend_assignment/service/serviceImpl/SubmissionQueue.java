@@ -0,0 +1,167 @@
+package com.assignment.buyogo_backend_assignment.service.serviceImpl;
+
+import com.assignment.buyogo_backend_assignment.repository.EventRow;
+import com.assignment.buyogo_backend_assignment.repository.UpsertOutcome;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Queue of submissions for one writer thread that group-commits them (WriteBehindBuffer and
+ * every ShardedIngestDispatcher shard). Requests add from any thread; only the writer calls
+ * nextGroup and hasPending.
+ *
+ * A group never holds the same eventId twice: ingest_events would keep the copy that comes
+ * last in the merged batch, not the one received last, and report the other as a duplicate.
+ * A submission that collides closes the group and opens the next one, so the copies are
+ * written one after the other, as without grouping.
+ *
+ * A group that fails is written again one submission at a time, so a request that cannot
+ * be written does not fail the requests it happened to be grouped with.
+ */
+@Slf4j
+final class SubmissionQueue {
+
+    private final BlockingQueue<Submission> queue = new LinkedBlockingQueue<>();
+    private final int flushSize;
+
+    // a submission that collided with the previous group; it opens the next one
+    private Submission carried;
+
+    SubmissionQueue(int flushSize) {
+        this.flushSize = flushSize;
+    }
+
+    void add(Submission submission) {
+        queue.add(submission);
+    }
+
+    Submission poll() {
+        return queue.poll();
+    }
+
+    boolean hasPending() {
+        return carried != null || !queue.isEmpty();
+    }
+
+    /**
+     * Waits up to idleMillis for a first submission (null if none came), then adds more
+     * until the group reaches flushSize or no other submission arrives within lingerNanos
+     * of the first one (0 = only what is already queued).
+     */
+    List<Submission> nextGroup(long idleMillis, long lingerNanos) throws InterruptedException {
+        Submission first = carried != null ? carried : queue.poll(idleMillis, TimeUnit.MILLISECONDS);
+        carried = null;
+        if (first == null) {
+            return null;
+        }
+
+        List<Submission> group = new ArrayList<>();
+        group.add(first);
+        Set<String> eventIds = new HashSet<>();
+        addEventIds(eventIds, first);
+        int size = first.events().size();
+        long deadline = System.nanoTime() + lingerNanos;
+        while (size < flushSize) {
+            Submission next = queue.poll();
+            if (next == null) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || (next = queue.poll(remaining, TimeUnit.NANOSECONDS)) == null) {
+                    break;
+                }
+            }
+            if (!addEventIds(eventIds, next)) {
+                carried = next;
+                break;
+            }
+            group.add(next);
+            size += next.events().size();
+        }
+        return group;
+    }
+
+    // adds the submission's eventIds to the group's, unless one of them is already there
+    private static boolean addEventIds(Set<String> groupEventIds, Submission submission) {
+        for (EventRow e : submission.events()) {
+            if (groupEventIds.contains(e.eventId())) {
+                return false;
+            }
+        }
+        for (EventRow e : submission.events()) {
+            groupEventIds.add(e.eventId());
+        }
+        return true;
+    }
+
+    private static List<EventRow> events(List<Submission> group) {
+        int size = 0;
+        for (Submission submission : group) {
+            size += submission.events().size();
+        }
+        List<EventRow> events = new ArrayList<>(size);
+        for (Submission submission : group) {
+            events.addAll(submission.events());
+        }
+        return events;
+    }
+
+    /**
+     * Writes the group with one upsert and completes its submissions. If that throws, the
+     * write was rolled back as a whole (chunked upserts only throw when no chunk committed),
+     * so each submission is written again on its own and only the ones that still fail get
+     * the error. Returns the number of events written.
+     */
+    static int write(List<Submission> group, Function<List<EventRow>, UpsertOutcome[]> upsert) {
+        List<EventRow> events = events(group);
+        try {
+            complete(group, upsert.apply(events));
+            return events.size();
+        } catch (RuntimeException e) {
+            if (group.size() == 1) {
+                log.warn("Write of {} events failed", events.size(), e);
+                group.get(0).result().completeExceptionally(e);
+                return 0;
+            }
+            log.warn("Grouped write of {} events failed, writing its {} submissions one by one", events.size(), group.size(), e);
+        }
+
+        int written = 0;
+        for (Submission submission : group) {
+            try {
+                complete(List.of(submission), upsert.apply(submission.events()));
+                written += submission.events().size();
+            } catch (RuntimeException e) {
+                log.warn("Write of {} events failed", submission.events().size(), e);
+                submission.result().completeExceptionally(e);
+            }
+        }
+        return written;
+    }
+
+    // hands each submission back its slice of the group's outcomes, in the order it was appended
+    private static void complete(List<Submission> group, UpsertOutcome[] outcomes) {
+        int offset = 0;
+        for (Submission submission : group) {
+            int n = submission.events().size();
+            UpsertOutcome[] slice = new UpsertOutcome[n];
+            System.arraycopy(outcomes, offset, slice, 0, n);
+            submission.result().complete(slice);
+            offset += n;
+        }
+    }
+
+    record Submission(List<EventRow> events, CompletableFuture<UpsertOutcome[]> result, long enqueuedAt) {
+
+        Submission(List<EventRow> events) {
+            this(events, new CompletableFuture<>(), System.nanoTime());
+        }
+    }
+}
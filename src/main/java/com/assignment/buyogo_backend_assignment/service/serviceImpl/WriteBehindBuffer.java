@@ -0,0 +1,201 @@
+package com.assignment.buyogo_backend_assignment.service.serviceImpl;
+
+import com.assignment.buyogo_backend_assignment.exception.IngestBufferFullException;
+import com.assignment.buyogo_backend_assignment.repository.EventBulkRepository;
+import com.assignment.buyogo_backend_assignment.repository.EventRow;
+import com.assignment.buyogo_backend_assignment.repository.UpsertOutcome;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group commit for small batches: submissions from concurrent requests are queued and a
+ * single flusher thread writes them with one bulkUpsert per flush-size or flush-interval,
+ * whichever comes first. The calling request waits for its flush, so the response still
+ * carries exact counts and is only sent after the rows are committed.
+ *
+ * The buffer is bounded in events (queued + being flushed). When it is full a request
+ * waits up to enqueue-timeout-ms and then gets IngestBufferFullException (429).
+ *
+ * When disabled, or for batches of at least flush-size events, upsert goes straight
+ * to the repository.
+ *
+ * Groups are assembled by SubmissionQueue, which never merges two copies of one eventId.
+ */
+@Component
+@RequiredArgsConstructor
+class WriteBehindBuffer {
+
+    private static final long IDLE_POLL_MS = 100;
+
+    private final EventBulkRepository eventBulkRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${events.ingest.write-behind.enabled:false}")
+    private boolean enabled = false;
+
+    @Value("${events.ingest.write-behind.capacity:20000}")
+    private int capacity = 20_000;
+
+    @Value("${events.ingest.write-behind.flush-size:1000}")
+    private int flushSize = 1000;
+
+    @Value("${events.ingest.write-behind.flush-interval-ms:5}")
+    private long flushIntervalMs = 5;
+
+    @Value("${events.ingest.write-behind.enqueue-timeout-ms:0}")
+    private long enqueueTimeoutMs = 0;
+
+    private SubmissionQueue queue;
+    private Semaphore permits;
+    private Thread flusher;
+    private volatile boolean running;
+
+    private Timer flushTimer;
+    private Timer waitTimer;
+    private DistributionSummary flushEvents;
+    private Counter rejectedRequests;
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        if (capacity < flushSize) {
+            throw new IllegalStateException("events.ingest.write-behind.capacity must be >= flush-size");
+        }
+        permits = new Semaphore(capacity);
+        queue = new SubmissionQueue(flushSize);
+
+        flushTimer = Timer.builder("events.ingest.flush")
+                .description("Time spent in one group-committed bulk upsert")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        waitTimer = Timer.builder("events.ingest.write-behind.wait")
+                .description("Time a request waits from enqueue until its flush has committed")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        flushEvents = DistributionSummary.builder("events.ingest.flush.events")
+                .description("Events written per flush")
+                .register(meterRegistry);
+        rejectedRequests = Counter.builder("events.ingest.write-behind.rejected")
+                .description("Requests turned away because the buffer was full")
+                .register(meterRegistry);
+        Gauge.builder("events.ingest.write-behind.pending", () -> capacity - permits.availablePermits())
+                .description("Events queued or being flushed")
+                .register(meterRegistry);
+
+        running = true;
+        flusher = new Thread(this::runFlusher, "event-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        // flusher drains whatever is queued before it exits
+        running = false;
+        flusher.join(TimeUnit.SECONDS.toMillis(30));
+        failPending(new IllegalStateException("write-behind buffer stopped"));
+    }
+
+    /**
+     * Upserts the events and returns their outcomes in order, through the group-commit
+     * queue when enabled.
+     */
+    UpsertOutcome[] upsert(List<EventRow> events) {
+        if (!running || events.size() >= flushSize) {
+            return eventBulkRepository.bulkUpsert(events);
+        }
+
+        acquire(events.size());
+        SubmissionQueue.Submission submission = new SubmissionQueue.Submission(events);
+        queue.add(submission);
+        if (!running) {
+            // lost the race with stop(), the flusher may never see it
+            failPending(new IllegalStateException("write-behind buffer stopped"));
+        }
+
+        try {
+            return submission.result().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        } finally {
+            waitTimer.record(System.nanoTime() - submission.enqueuedAt(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void acquire(int count) {
+        boolean acquired;
+        try {
+            acquired = enqueueTimeoutMs > 0
+                    ? permits.tryAcquire(count, enqueueTimeoutMs, TimeUnit.MILLISECONDS)
+                    : permits.tryAcquire(count);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            rejectedRequests.increment();
+            throw new IngestBufferFullException("Ingestion buffer is full, retry later");
+        }
+    }
+
+    private void runFlusher() {
+        long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        while (running || queue.hasPending()) {
+            try {
+                // the first submission opens the group, wait at most one interval for more
+                List<SubmissionQueue.Submission> group = queue.nextGroup(IDLE_POLL_MS, flushIntervalNanos);
+                if (group != null) {
+                    flush(group);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void flush(List<SubmissionQueue.Submission> group) {
+        int size = 0;
+        for (SubmissionQueue.Submission submission : group) {
+            size += submission.events().size();
+        }
+
+        long start = System.nanoTime();
+        try {
+            SubmissionQueue.write(group, eventBulkRepository::bulkUpsert);
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            flushEvents.record(size);
+            permits.release(size);
+        }
+    }
+
+    private void failPending(RuntimeException cause) {
+        SubmissionQueue.Submission submission;
+        while ((submission = queue.poll()) != null) {
+            submission.result().completeExceptionally(cause);
+            permits.release(submission.events().size());
+        }
+    }
+}
@@ -3,43 +3,361 @@ package com.assignment.buyogo_backend_assignment.util;
 import com.assignment.buyogo_backend_assignment.request.EventRequest;
 
 import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
 
+/**
+ * Hashes the event payload "eventId|eventTime|machineId|durationMs|defectCount|factoryId|lineId".
+ *
+ * The fields are encoded straight into a per-thread byte buffer and digested with a
+ * per-thread MessageDigest, so the only allocation per event is the resulting hex String.
+ * The bytes are identical to the old String.format(...).getBytes(UTF_8) payload, so hashes
+ * already stored in the events table stay valid.
+ */
 public class EventPayloadHashUtil {
 
-    public static String computeHash(EventRequest eventRequest){
-        try{
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte SEPARATOR = '|';
 
-            String payload= String.format("%s|%s|%s|%s|%s|%s|%s",
-                    eventRequest.eventId(),
-                    eventRequest.eventTime(),
-                    eventRequest.machineId(),
-                    eventRequest.durationMs(),
-                    eventRequest.defectCount(),
-                    eventRequest.factoryId() != null ? eventRequest.factoryId() : "",
-                    eventRequest.lineId() != null ? eventRequest.lineId() : ""
-                    );
+    // 10000-01-01T00:00:00Z, from there Instant.toString() switches to "+yyyyy"
+    private static final long MAX_FAST_EPOCH_SECOND = 253402300800L;
+    private static final long DAYS_0000_TO_1970 = 719528L;
 
-            byte[] hashBytes = digest.digest(payload.getBytes(StandardCharsets.UTF_8));
+    private static final ThreadLocal<HashBuffer> BUFFER = ThreadLocal.withInitial(HashBuffer::new);
 
-            return   bytesToHex(hashBytes);
+    public static String computeHash(EventRequest eventRequest) {
+        return computeHash(eventRequest, HashAlgorithm.SHA_256);
+    }
+
+    public static String computeHash(EventRequest eventRequest, HashAlgorithm algorithm) {
+        HashBuffer buffer = BUFFER.get();
+        buffer.reset();
+
+        buffer.writeString(eventRequest.eventId());
+        buffer.write(SEPARATOR);
+        buffer.writeInstant(eventRequest.eventTime());
+        buffer.write(SEPARATOR);
+        buffer.writeString(eventRequest.machineId());
+        buffer.write(SEPARATOR);
+        buffer.writeNumber(eventRequest.durationMs());
+        buffer.write(SEPARATOR);
+        buffer.writeNumber(eventRequest.defectCount());
+        buffer.write(SEPARATOR);
+        buffer.writeString(eventRequest.factoryId() != null ? eventRequest.factoryId() : "");
+        buffer.write(SEPARATOR);
+        buffer.writeString(eventRequest.lineId() != null ? eventRequest.lineId() : "");
+
+        return algorithm == HashAlgorithm.MURMUR3_128 ? buffer.murmur3Hex() : buffer.sha256Hex();
+    }
+
+    /**
+     * Reused scratch space of one thread: payload bytes, digest output and hex output.
+     */
+    private static final class HashBuffer {
+        private final MessageDigest sha256;
+        private final byte[] digest = new byte[32];
+        private final byte[] hex = new byte[64];
+        private byte[] bytes = new byte[256];
+        private int length;
+
+        private HashBuffer() {
+            try {
+                sha256 = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException("SHA-256 Algorithm Not Supported");
+            }
+        }
+
+        void reset() {
+            length = 0;
+        }
+
+        String sha256Hex() {
+            sha256.update(bytes, 0, length);
+            try {
+                sha256.digest(digest, 0, 32);
+            } catch (DigestException e) {
+                throw new IllegalStateException("SHA-256 digest failed", e);
+            }
+            return toHex(32);
+        }
+
+        String murmur3Hex() {
+            Murmur3.hash128(bytes, length, digest);
+            return toHex(16);
+        }
+
+        private String toHex(int digestLength) {
+            for (int i = 0; i < digestLength; i++) {
+                int b = digest[i] & 0xff;
+                hex[i << 1] = HEX[b >>> 4];
+                hex[(i << 1) + 1] = HEX[b & 0x0f];
+            }
+            return new String(hex, 0, digestLength << 1, StandardCharsets.ISO_8859_1);
+        }
 
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("SHA-256 Algorithm Not Supported");
+        void write(byte b) {
+            ensure(1);
+            bytes[length++] = b;
+        }
+
+        /**
+         * UTF-8, unpaired surrogates become '?' like String.getBytes(UTF_8). null is written as "null" (String.format).
+         */
+        void writeString(String s) {
+            if (s == null) {
+                writeAscii("null");
+                return;
+            }
+            int n = s.length();
+            ensure(n * 3);
+            for (int i = 0; i < n; i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    bytes[length++] = (byte) c;
+                } else if (c < 0x800) {
+                    bytes[length++] = (byte) (0xc0 | (c >> 6));
+                    bytes[length++] = (byte) (0x80 | (c & 0x3f));
+                } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    bytes[length++] = (byte) (0xf0 | (cp >> 18));
+                    bytes[length++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                    bytes[length++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                    bytes[length++] = (byte) (0x80 | (cp & 0x3f));
+                } else if (Character.isSurrogate(c)) {
+                    bytes[length++] = '?';
+                } else {
+                    bytes[length++] = (byte) (0xe0 | (c >> 12));
+                    bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    bytes[length++] = (byte) (0x80 | (c & 0x3f));
+                }
+            }
+        }
+
+        void writeNumber(Long value) {
+            if (value == null) {
+                writeAscii("null");
+            } else {
+                writeLong(value.longValue());
+            }
+        }
+
+        void writeNumber(Integer value) {
+            if (value == null) {
+                writeAscii("null");
+            } else {
+                writeLong(value.longValue());
+            }
+        }
+
+        void writeLong(long value) {
+            if (value == Long.MIN_VALUE) {
+                writeAscii(Long.toString(value));
+                return;
+            }
+            ensure(20);
+            if (value < 0) {
+                bytes[length++] = '-';
+                value = -value;
+            }
+            int digits = 1;
+            for (long v = value; v >= 10; v /= 10) {
+                digits++;
+            }
+            for (int i = length + digits - 1; i >= length; i--) {
+                bytes[i] = (byte) ('0' + (value % 10));
+                value /= 10;
+            }
+            length += digits;
+        }
+
+        /**
+         * Same text as Instant.toString() (ISO_INSTANT) for years 1970..9999.
+         */
+        void writeInstant(Instant instant) {
+            if (instant == null) {
+                writeAscii("null");
+                return;
+            }
+            long epochSecond = instant.getEpochSecond();
+            if (epochSecond < 0 || epochSecond >= MAX_FAST_EPOCH_SECOND) {
+                writeAscii(instant.toString());
+                return;
+            }
+            ensure(30);
+
+            long epochDay = epochSecond / 86_400;
+            int secondOfDay = (int) (epochSecond % 86_400);
+
+            // civil date from epoch day, same arithmetic as LocalDate.ofEpochDay
+            long zeroDay = epochDay + DAYS_0000_TO_1970 - 60;
+            long year = (400 * zeroDay + 591) / 146097;
+            long dayOfYear = zeroDay - (365 * year + year / 4 - year / 100 + year / 400);
+            if (dayOfYear < 0) {
+                year--;
+                dayOfYear = zeroDay - (365 * year + year / 4 - year / 100 + year / 400);
+            }
+            int marchDoy0 = (int) dayOfYear;
+            int marchMonth0 = (marchDoy0 * 5 + 2) / 153;
+            int month = (marchMonth0 + 2) % 12 + 1;
+            int day = marchDoy0 - (marchMonth0 * 306 + 5) / 10 + 1;
+            year += marchMonth0 / 10;
+
+            writeDigits((int) year, 4);
+            bytes[length++] = '-';
+            writeDigits(month, 2);
+            bytes[length++] = '-';
+            writeDigits(day, 2);
+            bytes[length++] = 'T';
+            writeDigits(secondOfDay / 3600, 2);
+            bytes[length++] = ':';
+            writeDigits((secondOfDay / 60) % 60, 2);
+            bytes[length++] = ':';
+            writeDigits(secondOfDay % 60, 2);
+
+            int nanos = instant.getNano();
+            if (nanos > 0) {
+                bytes[length++] = '.';
+                if (nanos % 1_000_000 == 0) {
+                    writeDigits(nanos / 1_000_000, 3);
+                } else if (nanos % 1000 == 0) {
+                    writeDigits(nanos / 1000, 6);
+                } else {
+                    writeDigits(nanos, 9);
+                }
+            }
+            bytes[length++] = 'Z';
+        }
+
+        private void writeDigits(int value, int width) {
+            for (int i = length + width - 1; i >= length; i--) {
+                bytes[i] = (byte) ('0' + (value % 10));
+                value /= 10;
+            }
+            length += width;
+        }
+
+        private void writeAscii(String s) {
+            ensure(s.length());
+            for (int i = 0; i < s.length(); i++) {
+                bytes[length++] = (byte) s.charAt(i);
+            }
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > bytes.length) {
+                byte[] grown = new byte[Math.max(bytes.length * 2, length + extra)];
+                System.arraycopy(bytes, 0, grown, 0, length);
+                bytes = grown;
+            }
         }
     }
 
-    private static String bytesToHex(byte[] bytes){
-        StringBuilder hexString = new StringBuilder();
-        for (byte b : bytes) {
-            String hex = Integer.toHexString( 0xff & b);
-            if (hex.length() == 1) {
-                hexString.append('0');
+    /**
+     * MurmurHash3 x64 128-bit (seed 0), little-endian h1 then h2 in the output.
+     */
+    private static final class Murmur3 {
+        private static final long C1 = 0x87c37b91114253d5L;
+        private static final long C2 = 0x4cf5ad432745937fL;
+
+        static void hash128(byte[] data, int length, byte[] out) {
+            long h1 = 0;
+            long h2 = 0;
+            int blocks = length >>> 4;
+
+            for (int i = 0; i < blocks; i++) {
+                long k1 = getLong(data, i << 4);
+                long k2 = getLong(data, (i << 4) + 8);
+
+                h1 ^= mixK1(k1);
+                h1 = Long.rotateLeft(h1, 27);
+                h1 += h2;
+                h1 = h1 * 5 + 0x52dce729;
+
+                h2 ^= mixK2(k2);
+                h2 = Long.rotateLeft(h2, 31);
+                h2 += h1;
+                h2 = h2 * 5 + 0x38495ab5;
+            }
+
+            int tail = blocks << 4;
+            long k1 = 0;
+            long k2 = 0;
+            switch (length & 15) {
+                case 15: k2 ^= (long) (data[tail + 14] & 0xff) << 48;
+                case 14: k2 ^= (long) (data[tail + 13] & 0xff) << 40;
+                case 13: k2 ^= (long) (data[tail + 12] & 0xff) << 32;
+                case 12: k2 ^= (long) (data[tail + 11] & 0xff) << 24;
+                case 11: k2 ^= (long) (data[tail + 10] & 0xff) << 16;
+                case 10: k2 ^= (long) (data[tail + 9] & 0xff) << 8;
+                case 9:
+                    k2 ^= data[tail + 8] & 0xff;
+                    h2 ^= mixK2(k2);
+                case 8: k1 ^= (long) (data[tail + 7] & 0xff) << 56;
+                case 7: k1 ^= (long) (data[tail + 6] & 0xff) << 48;
+                case 6: k1 ^= (long) (data[tail + 5] & 0xff) << 40;
+                case 5: k1 ^= (long) (data[tail + 4] & 0xff) << 32;
+                case 4: k1 ^= (long) (data[tail + 3] & 0xff) << 24;
+                case 3: k1 ^= (long) (data[tail + 2] & 0xff) << 16;
+                case 2: k1 ^= (long) (data[tail + 1] & 0xff) << 8;
+                case 1:
+                    k1 ^= data[tail] & 0xff;
+                    h1 ^= mixK1(k1);
+                default:
+                    break;
+            }
+
+            h1 ^= length;
+            h2 ^= length;
+            h1 += h2;
+            h2 += h1;
+            h1 = fmix(h1);
+            h2 = fmix(h2);
+            h1 += h2;
+            h2 += h1;
+
+            putLong(out, 0, h1);
+            putLong(out, 8, h2);
+        }
+
+        private static long mixK1(long k1) {
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            return k1 * C2;
+        }
+
+        private static long mixK2(long k2) {
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, 33);
+            return k2 * C1;
+        }
+
+        private static long fmix(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb9fe1a85ec53L;
+            k ^= k >>> 33;
+            return k;
+        }
+
+        private static long getLong(byte[] b, int i) {
+            return (b[i] & 0xffL)
+                    | (b[i + 1] & 0xffL) << 8
+                    | (b[i + 2] & 0xffL) << 16
+                    | (b[i + 3] & 0xffL) << 24
+                    | (b[i + 4] & 0xffL) << 32
+                    | (b[i + 5] & 0xffL) << 40
+                    | (b[i + 6] & 0xffL) << 48
+                    | (b[i + 7] & 0xffL) << 56;
+        }
+
+        private static void putLong(byte[] b, int i, long v) {
+            for (int j = 0; j < 8; j++) {
+                b[i + j] = (byte) (v >>> (8 * j));
             }
-            hexString.append(hex);
         }
-        return hexString.toString();
     }
 }
@@ -0,0 +1,16 @@
+package com.assignment.buyogo_backend_assignment.util;
+
+/**
+ * Payload hash used for dedup / update detection.
+ *
+ * SHA_256      - default, 64 hex chars, tamper evident.
+ * MURMUR3_128  - 32 hex chars, much cheaper, only good for dedup (not collision resistant
+ *                against crafted payloads).
+ *
+ * Switching on an existing database makes every replayed event look "changed" once,
+ * because stored hashes were produced by the other algorithm.
+ */
+public enum HashAlgorithm {
+    SHA_256,
+    MURMUR3_128
+}
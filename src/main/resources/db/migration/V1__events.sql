@@ -0,0 +1,17 @@
+-- events table as Hibernate created it before migrations were introduced.
+-- Databases that already have it are baselined at version 1 (spring.flyway.baseline-on-migrate).
+CREATE TABLE IF NOT EXISTS events (
+    id            bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    created_at    timestamp(6) with time zone,
+    defect_count  integer NOT NULL,
+    duration_ms   bigint NOT NULL,
+    event_id      varchar(255) NOT NULL,
+    event_time    timestamp(6) with time zone NOT NULL,
+    factory_id    varchar(255),
+    line_id       varchar(255),
+    machine_id    varchar(255) NOT NULL,
+    payload_hash  varchar(255) NOT NULL,
+    received_time timestamp(6) with time zone NOT NULL,
+    updated_at    timestamp(6) with time zone,
+    CONSTRAINT uk6n32fj1qargbmfgohcqggo6bo UNIQUE (event_id)
+);
@@ -0,0 +1,108 @@
+-- Per machine, per UTC hour event count and defect sum, kept in step with events by
+-- statement-level triggers. GET /api/v1/stats reads whole hours from here and only
+-- scans raw events for the partial hours at the edges of the window.
+--
+-- defects_count follows the stats rule: defect_count = -1 (unknown) is counted as an
+-- event but not added to the defect sum.
+
+CREATE TABLE machine_hourly_stats (
+    machine_id    varchar(255) NOT NULL,
+    hour_start    timestamptz NOT NULL,
+    events_count  bigint NOT NULL,
+    defects_count bigint NOT NULL,
+    PRIMARY KEY (machine_id, hour_start)
+);
+
+-- hour buckets are UTC so they line up with Instant.truncatedTo(HOURS) on the Java side,
+-- whatever the session TimeZone is
+CREATE FUNCTION stats_hour(t timestamptz) RETURNS timestamptz
+    LANGUAGE sql IMMUTABLE PARALLEL SAFE
+    RETURN date_trunc('hour', t AT TIME ZONE 'UTC') AT TIME ZONE 'UTC';
+
+-- One function for all three triggers. Inserted rows add to their bucket, deleted rows
+-- subtract, and updated rows do both, so a changed defect_count, event_time or
+-- machine_id moves the row between buckets. Buckets are written in key order so
+-- concurrent batches lock rollup rows in the same order.
+CREATE FUNCTION machine_hourly_stats_apply() RETURNS trigger
+    LANGUAGE plpgsql AS
+$$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO machine_hourly_stats AS s (machine_id, hour_start, events_count, defects_count)
+        SELECT machine_id, stats_hour(event_time), count(*), coalesce(sum(defect_count) FILTER (WHERE defect_count >= 0), 0)
+        FROM new_rows
+        GROUP BY 1, 2
+        ORDER BY 1, 2
+        ON CONFLICT (machine_id, hour_start) DO UPDATE
+            SET events_count = s.events_count + EXCLUDED.events_count,
+                defects_count = s.defects_count + EXCLUDED.defects_count;
+
+    ELSIF TG_OP = 'UPDATE' THEN
+        INSERT INTO machine_hourly_stats AS s (machine_id, hour_start, events_count, defects_count)
+        SELECT machine_id, hour_start, sum(events_delta), sum(defects_delta)
+        FROM (
+            SELECT machine_id, stats_hour(event_time) AS hour_start, 1 AS events_delta,
+                   CASE WHEN defect_count >= 0 THEN defect_count ELSE 0 END AS defects_delta
+            FROM new_rows
+            UNION ALL
+            SELECT machine_id, stats_hour(event_time), -1,
+                   CASE WHEN defect_count >= 0 THEN -defect_count ELSE 0 END
+            FROM old_rows
+        ) d
+        GROUP BY 1, 2
+        HAVING sum(events_delta) <> 0 OR sum(defects_delta) <> 0
+        ORDER BY 1, 2
+        ON CONFLICT (machine_id, hour_start) DO UPDATE
+            SET events_count = s.events_count + EXCLUDED.events_count,
+                defects_count = s.defects_count + EXCLUDED.defects_count;
+
+    ELSE
+        UPDATE machine_hourly_stats s
+        SET events_count = s.events_count - d.events_count,
+            defects_count = s.defects_count - d.defects_count
+        FROM (
+            SELECT machine_id, stats_hour(event_time) AS hour_start, count(*) AS events_count,
+                   coalesce(sum(defect_count) FILTER (WHERE defect_count >= 0), 0) AS defects_count
+            FROM old_rows
+            GROUP BY 1, 2
+        ) d
+        WHERE s.machine_id = d.machine_id
+          AND s.hour_start = d.hour_start;
+    END IF;
+    RETURN NULL;
+END
+$$;
+
+CREATE TRIGGER events_hourly_stats_insert
+    AFTER INSERT ON events
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION machine_hourly_stats_apply();
+
+CREATE TRIGGER events_hourly_stats_update
+    AFTER UPDATE ON events
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION machine_hourly_stats_apply();
+
+CREATE TRIGGER events_hourly_stats_delete
+    AFTER DELETE ON events
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION machine_hourly_stats_apply();
+
+CREATE FUNCTION machine_hourly_stats_truncate() RETURNS trigger
+    LANGUAGE plpgsql AS
+$$
+BEGIN
+    TRUNCATE machine_hourly_stats;
+    RETURN NULL;
+END
+$$;
+
+CREATE TRIGGER events_hourly_stats_truncate
+    AFTER TRUNCATE ON events
+    FOR EACH STATEMENT EXECUTE FUNCTION machine_hourly_stats_truncate();
+
+-- backfill for databases that already have events
+INSERT INTO machine_hourly_stats (machine_id, hour_start, events_count, defects_count)
+SELECT machine_id, stats_hour(event_time), count(*), coalesce(sum(defect_count) FILTER (WHERE defect_count >= 0), 0)
+FROM events
+GROUP BY 1, 2;
@@ -0,0 +1,14 @@
+-- Covering indexes for the stats read paths, so they can be answered with index-only scans
+-- once the visibility map is current (autovacuum / VACUUM).
+--
+--   GET /api/v1/stats                    machine_id = ? AND event_time range -> count, sum(defect_count)
+--   GET /api/v1/stats/top-defect-lines   factory_id = ? AND event_time range -> group by line_id, sum(defect_count)
+--
+-- CONCURRENTLY keeps ingestion running while the indexes build on a large table; Flyway runs
+-- this script outside a transaction because every statement in it is non-transactional.
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_events_machine_time
+    ON events (machine_id, event_time) INCLUDE (defect_count);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_events_factory_time_line
+    ON events (factory_id, event_time, line_id) INCLUDE (defect_count);
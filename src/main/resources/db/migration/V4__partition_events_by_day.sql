@@ -0,0 +1,268 @@
+-- events becomes a table range-partitioned by event_time, one partition per UTC day
+-- (events_pYYYYMMDD), plus events_default for rows outside every day partition.
+--
+-- A partitioned table cannot have a unique index on event_id alone (the partition key
+-- must be part of it), so global uniqueness moves to event_keys: one narrow row per
+-- event_id with the fields the upsert decision needs. ingest_events() claims keys there
+-- with ON CONFLICT (event_id) and only then writes the event row into its partition.
+--
+-- Existing rows are copied over. On a large table this is a one-off full rewrite.
+
+ALTER TABLE events RENAME TO events_unpartitioned;
+
+CREATE SEQUENCE events_row_id_seq;
+SELECT setval('events_row_id_seq', coalesce((SELECT max(id) FROM events_unpartitioned), 0) + 1, false);
+
+CREATE TABLE events (
+    id            bigint NOT NULL DEFAULT nextval('events_row_id_seq'),
+    created_at    timestamp(6) with time zone,
+    defect_count  integer NOT NULL,
+    duration_ms   bigint NOT NULL,
+    event_id      varchar(255) NOT NULL,
+    event_time    timestamp(6) with time zone NOT NULL,
+    factory_id    varchar(255),
+    line_id       varchar(255),
+    machine_id    varchar(255) NOT NULL,
+    payload_hash  varchar(255) NOT NULL,
+    received_time timestamp(6) with time zone NOT NULL,
+    updated_at    timestamp(6) with time zone
+) PARTITION BY RANGE (event_time);
+
+ALTER SEQUENCE events_row_id_seq OWNED BY events.id;
+
+CREATE TABLE events_default PARTITION OF events DEFAULT;
+
+-- prev_event_time is set by the upsert to the event_time it replaces, so the matching
+-- events row can be found in its old partition without probing every partition
+CREATE TABLE event_keys (
+    event_id        varchar(255) PRIMARY KEY,
+    event_time      timestamptz NOT NULL,
+    received_time   timestamptz NOT NULL,
+    payload_hash    varchar(255) NOT NULL,
+    prev_event_time timestamptz
+);
+
+-- Creates the partition for one UTC day if it does not exist yet. Rows of that day that
+-- already landed in events_default are moved into it (directly between partitions, so
+-- the rollup and key triggers on events do not see them).
+CREATE FUNCTION ensure_events_partition(p_day date) RETURNS boolean
+    LANGUAGE plpgsql AS
+$$
+DECLARE
+    v_name text := 'events_p' || to_char(p_day, 'YYYYMMDD');
+    v_from timestamptz := p_day::timestamp AT TIME ZONE 'UTC';
+    v_to   timestamptz := (p_day + 1)::timestamp AT TIME ZONE 'UTC';
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('events_partitions'));
+    IF to_regclass(v_name) IS NOT NULL THEN
+        RETURN false;
+    END IF;
+
+    CREATE TEMP TABLE events_partition_move (LIKE events) ON COMMIT DROP;
+    WITH moved AS (
+        DELETE FROM events_default WHERE event_time >= v_from AND event_time < v_to RETURNING *
+    )
+    INSERT INTO events_partition_move SELECT * FROM moved;
+
+    EXECUTE format('CREATE TABLE %I PARTITION OF events FOR VALUES FROM (%L) TO (%L)', v_name, v_from, v_to);
+    EXECUTE format('INSERT INTO %I SELECT * FROM events_partition_move', v_name);
+    DROP TABLE events_partition_move;
+    RETURN true;
+END
+$$;
+
+-- Retention: detaches (and unless p_detach_only, drops) every day partition that ends on
+-- or before p_cutoff, then removes what remains of that range from events_default,
+-- event_keys and machine_hourly_stats. Returns the detached partition names.
+CREATE FUNCTION drop_events_partitions_before(p_cutoff date, p_detach_only boolean) RETURNS SETOF text
+    LANGUAGE plpgsql AS
+$$
+DECLARE
+    v_cutoff timestamptz := p_cutoff::timestamp AT TIME ZONE 'UTC';
+    v_name   text;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('events_partitions'));
+
+    FOR v_name IN
+        SELECT c.relname
+        FROM pg_inherits i
+        JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = 'events'::regclass
+          AND c.relname ~ '^events_p[0-9]{8}$'
+          AND to_date(substr(c.relname, 9), 'YYYYMMDD') < p_cutoff
+        ORDER BY c.relname
+    LOOP
+        EXECUTE format('ALTER TABLE events DETACH PARTITION %I', v_name);
+        IF NOT p_detach_only THEN
+            EXECUTE format('DROP TABLE %I', v_name);
+        END IF;
+        RETURN NEXT v_name;
+    END LOOP;
+
+    DELETE FROM events_default WHERE event_time < v_cutoff;
+    DELETE FROM event_keys WHERE event_time < v_cutoff;
+    DELETE FROM machine_hourly_stats WHERE hour_start < v_cutoff;
+END
+$$;
+
+-- copy existing rows into day partitions (days that have data, plus the coming week)
+SELECT ensure_events_partition(d)
+FROM (
+    SELECT DISTINCT (event_time AT TIME ZONE 'UTC')::date AS d FROM events_unpartitioned
+    UNION
+    SELECT (now() AT TIME ZONE 'UTC')::date + n FROM generate_series(0, 7) AS n
+) days
+ORDER BY d;
+
+INSERT INTO events (id, created_at, defect_count, duration_ms, event_id, event_time, factory_id, line_id,
+                    machine_id, payload_hash, received_time, updated_at)
+SELECT id, created_at, defect_count, duration_ms, event_id, event_time, factory_id, line_id,
+       machine_id, payload_hash, received_time, updated_at
+FROM events_unpartitioned;
+
+INSERT INTO event_keys (event_id, event_time, received_time, payload_hash)
+SELECT event_id, event_time, received_time, payload_hash
+FROM events_unpartitioned;
+
+-- the old table takes its constraints, indexes and triggers with it
+DROP TABLE events_unpartitioned;
+
+ALTER TABLE events ADD CONSTRAINT events_pkey PRIMARY KEY (id, event_time);
+CREATE UNIQUE INDEX events_event_id_time_key ON events (event_id, event_time);
+CREATE INDEX idx_events_machine_time ON events (machine_id, event_time) INCLUDE (defect_count);
+CREATE INDEX idx_events_factory_time_line ON events (factory_id, event_time, line_id) INCLUDE (defect_count);
+CREATE INDEX idx_event_keys_event_time ON event_keys (event_time);
+
+-- rollup triggers on the partitioned parent; their transition tables cover all partitions,
+-- and an update that moves a row to another partition still arrives as an update
+CREATE TRIGGER events_hourly_stats_insert
+    AFTER INSERT ON events
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION machine_hourly_stats_apply();
+
+CREATE TRIGGER events_hourly_stats_update
+    AFTER UPDATE ON events
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION machine_hourly_stats_apply();
+
+CREATE TRIGGER events_hourly_stats_delete
+    AFTER DELETE ON events
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION machine_hourly_stats_apply();
+
+-- deleting events frees their event_id, truncating events clears everything derived from it
+CREATE FUNCTION event_keys_delete() RETURNS trigger
+    LANGUAGE plpgsql AS
+$$
+BEGIN
+    DELETE FROM event_keys k USING old_rows o WHERE k.event_id = o.event_id;
+    RETURN NULL;
+END
+$$;
+
+CREATE TRIGGER events_keys_delete
+    AFTER DELETE ON events
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION event_keys_delete();
+
+DROP FUNCTION machine_hourly_stats_truncate();
+
+CREATE FUNCTION events_truncate_derived() RETURNS trigger
+    LANGUAGE plpgsql AS
+$$
+BEGIN
+    TRUNCATE machine_hourly_stats, event_keys;
+    RETURN NULL;
+END
+$$;
+
+CREATE TRIGGER events_truncate_derived
+    AFTER TRUNCATE ON events
+    FOR EACH STATEMENT EXECUTE FUNCTION events_truncate_derived();
+
+-- Upsert of one batch, same rules and result as the old INSERT ... ON CONFLICT (event_id):
+-- the last copy of a repeated event_id wins, a new id is inserted, a known id is updated only
+-- when the payload changed and the event was received later. Returns (event_id, inserted)
+-- for every written id; ids that were not written are not returned.
+--
+-- Separate statements on purpose: the keys are claimed (and row locked) first, so the
+-- events insert/update that follows runs on a fresh snapshot that already sees anything a
+-- concurrent batch committed for the same ids while we waited for their locks.
+CREATE FUNCTION ingest_events(
+    p_event_id      varchar[],
+    p_event_time    timestamptz[],
+    p_received_time timestamptz[],
+    p_machine_id    varchar[],
+    p_duration_ms   bigint[],
+    p_defect_count  integer[],
+    p_factory_id    varchar[],
+    p_line_id       varchar[],
+    p_payload_hash  varchar[]
+) RETURNS TABLE (event_id varchar, inserted boolean)
+    LANGUAGE plpgsql AS
+$$
+#variable_conflict use_column
+DECLARE
+    v_event_id   varchar[];
+    v_inserted   boolean[];
+    v_prev_time  timestamptz[];
+BEGIN
+    -- 1) claim keys, in key order so concurrent batches lock in the same order
+    WITH batch AS (
+        SELECT DISTINCT ON (b.event_id) b.event_id, b.event_time, b.received_time, b.payload_hash
+        FROM unnest(p_event_id, p_event_time, p_received_time, p_payload_hash) WITH ORDINALITY
+            AS b(event_id, event_time, received_time, payload_hash, ord)
+        ORDER BY b.event_id, b.ord DESC
+    ), written AS (
+        INSERT INTO event_keys AS k (event_id, event_time, received_time, payload_hash)
+        SELECT event_id, event_time, received_time, payload_hash FROM batch
+        ON CONFLICT (event_id) DO UPDATE
+            SET prev_event_time = k.event_time,
+                event_time = EXCLUDED.event_time,
+                received_time = EXCLUDED.received_time,
+                payload_hash = EXCLUDED.payload_hash
+            WHERE k.payload_hash <> EXCLUDED.payload_hash
+              AND EXCLUDED.received_time > k.received_time
+        RETURNING k.event_id, (k.xmax = 0) AS inserted, k.prev_event_time
+    )
+    SELECT array_agg(w.event_id), array_agg(w.inserted), array_agg(w.prev_event_time)
+    INTO v_event_id, v_inserted, v_prev_time
+    FROM written w;
+
+    IF v_event_id IS NULL THEN
+        RETURN;
+    END IF;
+
+    -- 2) new ids
+    INSERT INTO events (event_id, event_time, received_time, machine_id, duration_ms, defect_count, factory_id, line_id, payload_hash)
+    SELECT DISTINCT ON (b.event_id)
+        b.event_id, b.event_time, b.received_time, b.machine_id, b.duration_ms, b.defect_count, b.factory_id, b.line_id, b.payload_hash
+    FROM unnest(p_event_id, p_event_time, p_received_time, p_machine_id, p_duration_ms, p_defect_count, p_factory_id, p_line_id, p_payload_hash)
+        WITH ORDINALITY AS b(event_id, event_time, received_time, machine_id, duration_ms, defect_count, factory_id, line_id, payload_hash, ord)
+    JOIN unnest(v_event_id, v_inserted) AS w(event_id, inserted) ON w.event_id = b.event_id AND w.inserted
+    ORDER BY b.event_id, b.ord DESC;
+
+    -- 3) changed ids, located in their old partition (a new event_time moves the row)
+    UPDATE events e
+    SET event_time = u.event_time,
+        received_time = u.received_time,
+        machine_id = u.machine_id,
+        duration_ms = u.duration_ms,
+        defect_count = u.defect_count,
+        factory_id = u.factory_id,
+        line_id = u.line_id,
+        payload_hash = u.payload_hash
+    FROM (
+        SELECT DISTINCT ON (b.event_id) b.*, w.prev_event_time
+        FROM unnest(p_event_id, p_event_time, p_received_time, p_machine_id, p_duration_ms, p_defect_count, p_factory_id, p_line_id, p_payload_hash)
+            WITH ORDINALITY AS b(event_id, event_time, received_time, machine_id, duration_ms, defect_count, factory_id, line_id, payload_hash, ord)
+        JOIN unnest(v_event_id, v_inserted, v_prev_time) AS w(event_id, inserted, prev_event_time)
+            ON w.event_id = b.event_id AND NOT w.inserted
+        ORDER BY b.event_id, b.ord DESC
+    ) u
+    WHERE e.event_id = u.event_id
+      AND e.event_time = u.prev_event_time;
+
+    RETURN QUERY SELECT * FROM unnest(v_event_id, v_inserted);
+END
+$$;
@@ -0,0 +1,224 @@
+-- machine_id, factory_id and line_id move out of every events row into three dictionary
+-- tables (machines, factories, lines) with integer surrogate keys. events and
+-- machine_hourly_stats keep only the 4-byte keys, which makes rows and the stats indexes
+-- narrower and lets the stats queries group and compare integers instead of strings.
+--
+-- Dictionary rows are never deleted or renumbered (not by retention either), so a key,
+-- once handed out, can be cached by the application for as long as it runs.
+--
+-- Existing rows are rewritten once. The space of the dropped columns is given back as
+-- rows are rewritten; VACUUM FULL a partition to get it back at once.
+
+CREATE TABLE machines (
+    machine_key integer GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+    machine_id  varchar(255) NOT NULL UNIQUE
+);
+
+CREATE TABLE factories (
+    factory_key integer GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+    factory_id  varchar(255) NOT NULL UNIQUE
+);
+
+-- lines are keyed by their line_id alone, like the string column was; the same line_id
+-- in two factories shares one key and queries still filter by factory
+CREATE TABLE lines (
+    line_key integer GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+    line_id  varchar(255) NOT NULL UNIQUE
+);
+
+INSERT INTO machines (machine_id)
+SELECT machine_id FROM events
+UNION
+SELECT machine_id FROM machine_hourly_stats
+ORDER BY 1;
+
+INSERT INTO factories (factory_id)
+SELECT DISTINCT factory_id FROM events WHERE factory_id IS NOT NULL ORDER BY 1;
+
+INSERT INTO lines (line_id)
+SELECT DISTINCT line_id FROM events WHERE line_id IS NOT NULL ORDER BY 1;
+
+-- the rollup triggers go with the function; the backfill below must not touch the rollup
+DROP FUNCTION machine_hourly_stats_apply() CASCADE;
+
+-- machine_hourly_stats: machine_id -> machine_key
+ALTER TABLE machine_hourly_stats ADD COLUMN machine_key integer;
+
+UPDATE machine_hourly_stats s
+SET machine_key = m.machine_key
+FROM machines m
+WHERE m.machine_id = s.machine_id;
+
+ALTER TABLE machine_hourly_stats DROP CONSTRAINT machine_hourly_stats_pkey;
+ALTER TABLE machine_hourly_stats DROP COLUMN machine_id;
+ALTER TABLE machine_hourly_stats ALTER COLUMN machine_key SET NOT NULL;
+ALTER TABLE machine_hourly_stats ADD PRIMARY KEY (machine_key, hour_start);
+
+-- events: the three strings -> keys (dropping the columns drops the stats indexes on them)
+ALTER TABLE events
+    ADD COLUMN machine_key integer,
+    ADD COLUMN factory_key integer,
+    ADD COLUMN line_key    integer;
+
+UPDATE events e
+SET machine_key = (SELECT m.machine_key FROM machines m WHERE m.machine_id = e.machine_id),
+    factory_key = (SELECT f.factory_key FROM factories f WHERE f.factory_id = e.factory_id),
+    line_key    = (SELECT l.line_key FROM lines l WHERE l.line_id = e.line_id);
+
+ALTER TABLE events
+    DROP COLUMN machine_id,
+    DROP COLUMN factory_id,
+    DROP COLUMN line_id,
+    ALTER COLUMN machine_key SET NOT NULL;
+
+CREATE INDEX idx_events_machine_time ON events (machine_key, event_time) INCLUDE (defect_count);
+CREATE INDEX idx_events_factory_time_line ON events (factory_key, event_time, line_key) INCLUDE (defect_count);
+
+-- same rules as the V2 function, keyed by machine_key
+CREATE FUNCTION machine_hourly_stats_apply() RETURNS trigger
+    LANGUAGE plpgsql AS
+$$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO machine_hourly_stats AS s (machine_key, hour_start, events_count, defects_count)
+        SELECT machine_key, stats_hour(event_time), count(*), coalesce(sum(defect_count) FILTER (WHERE defect_count >= 0), 0)
+        FROM new_rows
+        GROUP BY 1, 2
+        ORDER BY 1, 2
+        ON CONFLICT (machine_key, hour_start) DO UPDATE
+            SET events_count = s.events_count + EXCLUDED.events_count,
+                defects_count = s.defects_count + EXCLUDED.defects_count;
+
+    ELSIF TG_OP = 'UPDATE' THEN
+        INSERT INTO machine_hourly_stats AS s (machine_key, hour_start, events_count, defects_count)
+        SELECT machine_key, hour_start, sum(events_delta), sum(defects_delta)
+        FROM (
+            SELECT machine_key, stats_hour(event_time) AS hour_start, 1 AS events_delta,
+                   CASE WHEN defect_count >= 0 THEN defect_count ELSE 0 END AS defects_delta
+            FROM new_rows
+            UNION ALL
+            SELECT machine_key, stats_hour(event_time), -1,
+                   CASE WHEN defect_count >= 0 THEN -defect_count ELSE 0 END
+            FROM old_rows
+        ) d
+        GROUP BY 1, 2
+        HAVING sum(events_delta) <> 0 OR sum(defects_delta) <> 0
+        ORDER BY 1, 2
+        ON CONFLICT (machine_key, hour_start) DO UPDATE
+            SET events_count = s.events_count + EXCLUDED.events_count,
+                defects_count = s.defects_count + EXCLUDED.defects_count;
+
+    ELSE
+        UPDATE machine_hourly_stats s
+        SET events_count = s.events_count - d.events_count,
+            defects_count = s.defects_count - d.defects_count
+        FROM (
+            SELECT machine_key, stats_hour(event_time) AS hour_start, count(*) AS events_count,
+                   coalesce(sum(defect_count) FILTER (WHERE defect_count >= 0), 0) AS defects_count
+            FROM old_rows
+            GROUP BY 1, 2
+        ) d
+        WHERE s.machine_key = d.machine_key
+          AND s.hour_start = d.hour_start;
+    END IF;
+    RETURN NULL;
+END
+$$;
+
+CREATE TRIGGER events_hourly_stats_insert
+    AFTER INSERT ON events
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION machine_hourly_stats_apply();
+
+CREATE TRIGGER events_hourly_stats_update
+    AFTER UPDATE ON events
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION machine_hourly_stats_apply();
+
+CREATE TRIGGER events_hourly_stats_delete
+    AFTER DELETE ON events
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION machine_hourly_stats_apply();
+
+-- ingest_events takes the keys instead of the strings; the caller resolves them through
+-- the dictionaries first. Everything else is unchanged from V4.
+DROP FUNCTION ingest_events(varchar[], timestamptz[], timestamptz[], varchar[], bigint[], integer[], varchar[], varchar[], varchar[]);
+
+CREATE FUNCTION ingest_events(
+    p_event_id      varchar[],
+    p_event_time    timestamptz[],
+    p_received_time timestamptz[],
+    p_machine_key   integer[],
+    p_duration_ms   bigint[],
+    p_defect_count  integer[],
+    p_factory_key   integer[],
+    p_line_key      integer[],
+    p_payload_hash  varchar[]
+) RETURNS TABLE (event_id varchar, inserted boolean)
+    LANGUAGE plpgsql AS
+$$
+#variable_conflict use_column
+DECLARE
+    v_event_id   varchar[];
+    v_inserted   boolean[];
+    v_prev_time  timestamptz[];
+BEGIN
+    -- 1) claim keys, in key order so concurrent batches lock in the same order
+    WITH batch AS (
+        SELECT DISTINCT ON (b.event_id) b.event_id, b.event_time, b.received_time, b.payload_hash
+        FROM unnest(p_event_id, p_event_time, p_received_time, p_payload_hash) WITH ORDINALITY
+            AS b(event_id, event_time, received_time, payload_hash, ord)
+        ORDER BY b.event_id, b.ord DESC
+    ), written AS (
+        INSERT INTO event_keys AS k (event_id, event_time, received_time, payload_hash)
+        SELECT event_id, event_time, received_time, payload_hash FROM batch
+        ON CONFLICT (event_id) DO UPDATE
+            SET prev_event_time = k.event_time,
+                event_time = EXCLUDED.event_time,
+                received_time = EXCLUDED.received_time,
+                payload_hash = EXCLUDED.payload_hash
+            WHERE k.payload_hash <> EXCLUDED.payload_hash
+              AND EXCLUDED.received_time > k.received_time
+        RETURNING k.event_id, (k.xmax = 0) AS inserted, k.prev_event_time
+    )
+    SELECT array_agg(w.event_id), array_agg(w.inserted), array_agg(w.prev_event_time)
+    INTO v_event_id, v_inserted, v_prev_time
+    FROM written w;
+
+    IF v_event_id IS NULL THEN
+        RETURN;
+    END IF;
+
+    -- 2) new ids
+    INSERT INTO events (event_id, event_time, received_time, machine_key, duration_ms, defect_count, factory_key, line_key, payload_hash)
+    SELECT DISTINCT ON (b.event_id)
+        b.event_id, b.event_time, b.received_time, b.machine_key, b.duration_ms, b.defect_count, b.factory_key, b.line_key, b.payload_hash
+    FROM unnest(p_event_id, p_event_time, p_received_time, p_machine_key, p_duration_ms, p_defect_count, p_factory_key, p_line_key, p_payload_hash)
+        WITH ORDINALITY AS b(event_id, event_time, received_time, machine_key, duration_ms, defect_count, factory_key, line_key, payload_hash, ord)
+    JOIN unnest(v_event_id, v_inserted) AS w(event_id, inserted) ON w.event_id = b.event_id AND w.inserted
+    ORDER BY b.event_id, b.ord DESC;
+
+    -- 3) changed ids, located in their old partition (a new event_time moves the row)
+    UPDATE events e
+    SET event_time = u.event_time,
+        received_time = u.received_time,
+        machine_key = u.machine_key,
+        duration_ms = u.duration_ms,
+        defect_count = u.defect_count,
+        factory_key = u.factory_key,
+        line_key = u.line_key,
+        payload_hash = u.payload_hash
+    FROM (
+        SELECT DISTINCT ON (b.event_id) b.*, w.prev_event_time
+        FROM unnest(p_event_id, p_event_time, p_received_time, p_machine_key, p_duration_ms, p_defect_count, p_factory_key, p_line_key, p_payload_hash)
+            WITH ORDINALITY AS b(event_id, event_time, received_time, machine_key, duration_ms, defect_count, factory_key, line_key, payload_hash, ord)
+        JOIN unnest(v_event_id, v_inserted, v_prev_time) AS w(event_id, inserted, prev_event_time)
+            ON w.event_id = b.event_id AND NOT w.inserted
+        ORDER BY b.event_id, b.ord DESC
+    ) u
+    WHERE e.event_id = u.event_id
+      AND e.event_time = u.prev_event_time;
+
+    RETURN QUERY SELECT * FROM unnest(v_event_id, v_inserted);
+END
+$$;
@@ -0,0 +1,107 @@
+-- ingest_events locked machine_hourly_stats rows from two statement triggers: the insert
+-- trigger of step 2 and the update trigger of step 3, each in its own (machine_key, hour_start)
+-- order. Two overlapping batches could therefore lock the same rollup rows in opposite
+-- orders and deadlock. Step 1b now locks all of them up front in one sorted statement.
+-- Unchanged from V5 otherwise.
+
+CREATE OR REPLACE FUNCTION ingest_events(
+    p_event_id      varchar[],
+    p_event_time    timestamptz[],
+    p_received_time timestamptz[],
+    p_machine_key   integer[],
+    p_duration_ms   bigint[],
+    p_defect_count  integer[],
+    p_factory_key   integer[],
+    p_line_key      integer[],
+    p_payload_hash  varchar[]
+) RETURNS TABLE (event_id varchar, inserted boolean)
+    LANGUAGE plpgsql AS
+$$
+#variable_conflict use_column
+DECLARE
+    v_event_id   varchar[];
+    v_inserted   boolean[];
+    v_prev_time  timestamptz[];
+BEGIN
+    -- 1) claim keys, in key order so concurrent batches lock in the same order
+    WITH batch AS (
+        SELECT DISTINCT ON (b.event_id) b.event_id, b.event_time, b.received_time, b.payload_hash
+        FROM unnest(p_event_id, p_event_time, p_received_time, p_payload_hash) WITH ORDINALITY
+            AS b(event_id, event_time, received_time, payload_hash, ord)
+        ORDER BY b.event_id, b.ord DESC
+    ), written AS (
+        INSERT INTO event_keys AS k (event_id, event_time, received_time, payload_hash)
+        SELECT event_id, event_time, received_time, payload_hash FROM batch
+        ON CONFLICT (event_id) DO UPDATE
+            SET prev_event_time = k.event_time,
+                event_time = EXCLUDED.event_time,
+                received_time = EXCLUDED.received_time,
+                payload_hash = EXCLUDED.payload_hash
+            WHERE k.payload_hash <> EXCLUDED.payload_hash
+              AND EXCLUDED.received_time > k.received_time
+        RETURNING k.event_id, (k.xmax = 0) AS inserted, k.prev_event_time
+    )
+    SELECT array_agg(w.event_id), array_agg(w.inserted), array_agg(w.prev_event_time)
+    INTO v_event_id, v_inserted, v_prev_time
+    FROM written w;
+
+    IF v_event_id IS NULL THEN
+        RETURN;
+    END IF;
+
+    -- 1b) lock every machine_hourly_stats row the triggers of steps 2 and 3 will change, in
+    -- (machine_key, hour_start) order, creating the missing ones. The insert trigger and the
+    -- update trigger then only touch rows this transaction already holds, so two batches
+    -- lock rollup rows in one order (after their event_keys rows, also in key order).
+    INSERT INTO machine_hourly_stats AS s (machine_key, hour_start, events_count, defects_count)
+    SELECT DISTINCT r.machine_key, r.hour_start, 0, 0
+    FROM (
+        -- new and changed ids: the hour their (last) copy is written to
+        (SELECT DISTINCT ON (b.event_id) b.machine_key, stats_hour(b.event_time) AS hour_start
+         FROM unnest(p_event_id, p_event_time, p_machine_key) WITH ORDINALITY AS b(event_id, event_time, machine_key, ord)
+         JOIN unnest(v_event_id) AS w(event_id) ON w.event_id = b.event_id
+         ORDER BY b.event_id, b.ord DESC)
+        UNION ALL
+        -- changed ids: the hour their old row is taken out of
+        SELECT e.machine_key, stats_hour(e.event_time)
+        FROM unnest(v_event_id, v_inserted, v_prev_time) AS w(event_id, inserted, prev_event_time)
+        JOIN events e ON e.event_id = w.event_id AND e.event_time = w.prev_event_time
+        WHERE NOT w.inserted
+    ) r
+    ORDER BY 1, 2
+    ON CONFLICT (machine_key, hour_start) DO UPDATE
+        SET events_count = s.events_count;
+
+    -- 2) new ids
+    INSERT INTO events (event_id, event_time, received_time, machine_key, duration_ms, defect_count, factory_key, line_key, payload_hash)
+    SELECT DISTINCT ON (b.event_id)
+        b.event_id, b.event_time, b.received_time, b.machine_key, b.duration_ms, b.defect_count, b.factory_key, b.line_key, b.payload_hash
+    FROM unnest(p_event_id, p_event_time, p_received_time, p_machine_key, p_duration_ms, p_defect_count, p_factory_key, p_line_key, p_payload_hash)
+        WITH ORDINALITY AS b(event_id, event_time, received_time, machine_key, duration_ms, defect_count, factory_key, line_key, payload_hash, ord)
+    JOIN unnest(v_event_id, v_inserted) AS w(event_id, inserted) ON w.event_id = b.event_id AND w.inserted
+    ORDER BY b.event_id, b.ord DESC;
+
+    -- 3) changed ids, located in their old partition (a new event_time moves the row)
+    UPDATE events e
+    SET event_time = u.event_time,
+        received_time = u.received_time,
+        machine_key = u.machine_key,
+        duration_ms = u.duration_ms,
+        defect_count = u.defect_count,
+        factory_key = u.factory_key,
+        line_key = u.line_key,
+        payload_hash = u.payload_hash
+    FROM (
+        SELECT DISTINCT ON (b.event_id) b.*, w.prev_event_time
+        FROM unnest(p_event_id, p_event_time, p_received_time, p_machine_key, p_duration_ms, p_defect_count, p_factory_key, p_line_key, p_payload_hash)
+            WITH ORDINALITY AS b(event_id, event_time, received_time, machine_key, duration_ms, defect_count, factory_key, line_key, payload_hash, ord)
+        JOIN unnest(v_event_id, v_inserted, v_prev_time) AS w(event_id, inserted, prev_event_time)
+            ON w.event_id = b.event_id AND NOT w.inserted
+        ORDER BY b.event_id, b.ord DESC
+    ) u
+    WHERE e.event_id = u.event_id
+      AND e.event_time = u.prev_event_time;
+
+    RETURN QUERY SELECT * FROM unnest(v_event_id, v_inserted);
+END
+$$;
@@ -0,0 +1,95 @@
+package com.assignment.buyogo_backend_assignment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource(properties = {
+        "events.admission.enabled=true",
+        "events.admission.max-concurrent=1",
+        "events.admission.wait-timeout-ms=50",
+        // holds the first request inside the controller until its flush interval ends
+        "events.ingest.write-behind.enabled=true",
+        "events.ingest.write-behind.flush-interval-ms=1500"
+})
+public class AdmissionLimitIntegrationTest extends BaseIntegrationTest {
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    ObjectMapper objectMapper;
+
+    private String statsUrl() {
+        return "/api/v1/stats?machineId=M-AL&start=" + Instant.now().minusSeconds(3600) + "&end=" + Instant.now();
+    }
+
+    @Test
+    void shouldReturn503WhenAllSlotsAreBusyAndAdmitAgainAfterwards() throws Exception {
+        String batch = objectMapper.writeValueAsString(List.of(Map.of(
+                "eventId", "AL-1",
+                "eventTime", Instant.now().minusSeconds(60).toString(),
+                "machineId", "M-AL",
+                "durationMs", 1000,
+                "defectCount", 0
+        )));
+
+        ExecutorService es = Executors.newSingleThreadExecutor();
+        Future<?> slow = es.submit(() -> mockMvc.perform(post("/api/v1/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(batch))
+                .andExpect(status().isOk()));
+        Thread.sleep(500);
+
+        mockMvc.perform(get(statsUrl()))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().exists("Retry-After"))
+                .andExpect(jsonPath("$.error").exists());
+
+        slow.get(10, TimeUnit.SECONDS);
+        es.shutdownNow();
+
+        // the slot was given back
+        mockMvc.perform(get(statsUrl()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.eventsCount").value(1));
+    }
+
+    @Test
+    void streamedStatsShouldGiveTheirSlotBack() throws Exception {
+        // max-concurrent is 1: a slot kept by any of these calls would turn the next one into a 503
+        for (int i = 0; i < 3; i++) {
+            MvcResult started = mockMvc.perform(get("/api/v1/stats/machines")
+                            .param("machineIds", "M-AL")
+                            .param("start", Instant.now().minusSeconds(3600).toString())
+                            .param("end", Instant.now().toString()))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            mockMvc.perform(asyncDispatch(started))
+                    .andExpect(status().isOk());
+        }
+
+        mockMvc.perform(get(statsUrl()))
+                .andExpect(status().isOk());
+    }
+}
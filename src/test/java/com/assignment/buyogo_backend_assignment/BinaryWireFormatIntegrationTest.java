@@ -0,0 +1,78 @@
+package com.assignment.buyogo_backend_assignment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class BinaryWireFormatIntegrationTest extends BaseIntegrationTest {
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    ObjectMapper objectMapper;
+
+    private Map<String, Object> event(String id, Object eventTime) {
+        return Map.of(
+                "eventId", id,
+                "eventTime", eventTime,
+                "machineId", "M-BIN",
+                "durationMs", 1000,
+                "defectCount", 2,
+                "factoryId", "F01",
+                "lineId", "L1"
+        );
+    }
+
+    @Test
+    void smileBatchWithEpochMillisShouldMatchTheJsonEvent() throws Exception {
+        Instant t = Instant.now().minusSeconds(60).truncatedTo(ChronoUnit.MILLIS);
+        byte[] smile = new SmileMapper().writeValueAsBytes(List.of(event("BIN-1", t.toEpochMilli())));
+
+        mockMvc.perform(post("/api/v1/events/batch")
+                        .contentType("application/x-jackson-smile")
+                        .content(smile))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.accepted").value(1));
+
+        // same event as ISO-8601 JSON has the same payload hash
+        mockMvc.perform(post("/api/v1/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(event("BIN-1", t.toString())))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deduped").value(1));
+    }
+
+    @Test
+    void cborBatchShouldBeValidatedLikeJson() throws Exception {
+        Instant t = Instant.now().minusSeconds(60);
+        byte[] cbor = new CBORMapper().writeValueAsBytes(List.of(
+                event("BIN-2", t.toEpochMilli()),
+                event("BIN-3", t.plus(1, ChronoUnit.DAYS).toEpochMilli())
+        ));
+
+        mockMvc.perform(post("/api/v1/events/batch")
+                        .contentType("application/cbor")
+                        .content(cbor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(1))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.rejections[0].eventId").value("BIN-3"));
+    }
+}
@@ -0,0 +1,149 @@
+package com.assignment.buyogo_backend_assignment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource(properties = {
+        "events.ingest.chunking.enabled=true",
+        // fixed chunks of 50 so the test knows where they split
+        "events.ingest.chunking.initial-size=50",
+        "events.ingest.chunking.min-size=50",
+        "events.ingest.chunking.max-size=50",
+        // batches of 200+ take the parallel prepare path
+        "events.ingest.parallel.min-batch-size=200",
+        "events.ingest.parallel.chunk-size=64"
+})
+public class ChunkedUpsertIntegrationTest extends BaseIntegrationTest {
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    ObjectMapper objectMapper;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    private String batch(String prefix, int count) throws Exception {
+        Instant t = Instant.now().minusSeconds(600);
+        List<Map<String, Object>> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            events.add(Map.of(
+                    "eventId", prefix + "-" + i,
+                    "eventTime", t.plusMillis(i).toString(),
+                    "machineId", "M-CHUNK",
+                    "durationMs", 1000,
+                    "defectCount", 1
+            ));
+        }
+        return objectMapper.writeValueAsString(events);
+    }
+
+    private long stored(String prefix) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM events WHERE event_id LIKE ?", Long.class, prefix + "-%");
+    }
+
+    @Test
+    void chunkedBatchShouldReportCountsOfAllChunks() throws Exception {
+        String json = batch("CH-OK", 120);
+
+        mockMvc.perform(post("/api/v1/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(120))
+                .andExpect(jsonPath("$.rejected").value(0));
+
+        mockMvc.perform(post("/api/v1/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(0))
+                .andExpect(jsonPath("$.deduped").value(120));
+
+        assertThat(stored("CH-OK")).isEqualTo(120L);
+    }
+
+    // inserting the given event fails, so the chunk holding it cannot be written
+    private void rejectEvent(String eventId) {
+        jdbcTemplate.execute("""
+                CREATE FUNCTION reject_test_event() RETURNS trigger LANGUAGE plpgsql AS $$
+                BEGIN
+                    IF NEW.event_id = '%s' THEN
+                        RAISE EXCEPTION 'rejected by test trigger';
+                    END IF;
+                    RETURN NEW;
+                END
+                $$""".formatted(eventId));
+        jdbcTemplate.execute("CREATE TRIGGER reject_test_event BEFORE INSERT ON event_keys "
+                + "FOR EACH ROW EXECUTE FUNCTION reject_test_event()");
+    }
+
+    private void dropRejectTrigger() {
+        jdbcTemplate.execute("DROP TRIGGER reject_test_event ON event_keys");
+        jdbcTemplate.execute("DROP FUNCTION reject_test_event()");
+    }
+
+    private long storedBetween(String prefix, int first, int last) {
+        return jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM events WHERE event_id LIKE ? "
+                        + "AND split_part(event_id, '-', 3)::int BETWEEN ? AND ?", Long.class, prefix + "-%", first, last);
+    }
+
+    @Test
+    void failedChunkShouldNotFailTheOtherChunks() throws Exception {
+        // second chunk
+        rejectEvent("CH-PART-60");
+        try {
+            mockMvc.perform(post("/api/v1/events/batch")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(batch("CH-PART", 150)))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.accepted").value(100))
+                    .andExpect(jsonPath("$.rejected").value(50))
+                    .andExpect(jsonPath("$.rejections[0].eventId").value("CH-PART-50"));
+        } finally {
+            dropRejectTrigger();
+        }
+
+        assertThat(stored("CH-PART")).isEqualTo(100L);
+        assertThat(storedBetween("CH-PART", 50, 99)).isZero();
+    }
+
+    @Test
+    void largeBatchShouldBeChunkedToo() throws Exception {
+        // at least parallel.min-batch-size events, fourth chunk
+        rejectEvent("CH-LARGE-170");
+        try {
+            mockMvc.perform(post("/api/v1/events/batch")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(batch("CH-LARGE", 250)))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.accepted").value(200))
+                    .andExpect(jsonPath("$.rejected").value(50))
+                    .andExpect(jsonPath("$.rejections[0].eventId").value("CH-LARGE-150"))
+                    .andExpect(jsonPath("$.rejections[0].reason").value("Write failed, send the event again"));
+        } finally {
+            dropRejectTrigger();
+        }
+
+        assertThat(stored("CH-LARGE")).isEqualTo(200L);
+        assertThat(storedBetween("CH-LARGE", 150, 199)).isZero();
+    }
+}
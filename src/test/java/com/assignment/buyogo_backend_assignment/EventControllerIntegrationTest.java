@@ -9,6 +9,7 @@ import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.*;
@@ -108,6 +109,78 @@ public class EventControllerIntegrationTest extends BaseIntegrationTest {
                 .andExpect(jsonPath("$.updated").value(1));
     }
 
+    @Test
+    void shouldCollapseRepeatedIdsInOneBatch() throws Exception {
+        Instant t = Instant.now().minusSeconds(60);
+        var payload = List.of(
+                event("E-DUP", t, 1000, 1),
+                event("E-DUP-OTHER", t, 1000, 1),
+                event("E-DUP", t, 1000, 2),
+                event("E-DUP", t, 1000, 3)
+        );
+
+        mockMvc.perform(post("/api/v1/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(payload)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(2))
+                .andExpect(jsonPath("$.collapsed").value(2))
+                .andExpect(jsonPath("$.deduped").value(0));
+
+        // the last copy is the stored one
+        mockMvc.perform(post("/api/v1/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(event("E-DUP", t, 1000, 3)))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deduped").value(1));
+    }
+
+    @Test
+    void shouldIngestLargeBatchThroughCopyPath() throws Exception {
+        // above events.ingest.copy-threshold
+        Instant t = Instant.now().minusSeconds(600);
+        var payload = new ArrayList<Map<String, Object>>();
+        for (int i = 0; i < 2500; i++) {
+            payload.add(event("BIG-" + i, t.plusMillis(i), 1000, i % 3));
+        }
+        String json = objectMapper.writeValueAsString(payload);
+
+        mockMvc.perform(post("/api/v1/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(2500));
+
+        mockMvc.perform(post("/api/v1/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deduped").value(2500));
+    }
+
+    @Test
+    void shouldIngestNdjsonStream() throws Exception {
+        Instant t = Instant.now().minusSeconds(300);
+        StringBuilder ndjson = new StringBuilder();
+        ndjson.append(objectMapper.writeValueAsString(event("STREAM-1", t, 1000, 1))).append('\n');
+        // wrong type for durationMs -> rejected, parsing continues with the next line
+        ndjson.append("{\"eventId\":\"STREAM-BAD\",\"eventTime\":\"").append(t)
+                .append("\",\"machineId\":\"M-1\",\"durationMs\":{\"x\":1},\"defectCount\":1}\n");
+        ndjson.append(objectMapper.writeValueAsString(event("STREAM-2", t, 1000, 2))).append('\n');
+        // missing machineId -> rejected by validation
+        ndjson.append("{\"eventId\":\"STREAM-3\",\"eventTime\":\"").append(t)
+                .append("\",\"durationMs\":10,\"defectCount\":1}\n");
+        ndjson.append(objectMapper.writeValueAsString(event("STREAM-1", t, 1000, 1))).append('\n');
+
+        mockMvc.perform(post("/api/v1/events/stream")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(ndjson.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(2))
+                .andExpect(jsonPath("$.rejected").value(2))
+                .andExpect(jsonPath("$.rejections[1].eventId").value("STREAM-3"));
+    }
+
     @Test
     void shouldBeThreadSafeForSameEventId() throws Exception {
         String json = objectMapper.writeValueAsString(
@@ -0,0 +1,107 @@
+package com.assignment.buyogo_backend_assignment;
+
+import com.assignment.buyogo_backend_assignment.request.EventRequest;
+import com.assignment.buyogo_backend_assignment.util.EventPayloadHashUtil;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Hashes stored in events.payload_hash were computed as SHA-256 over String.format(...) in
+ * UTF-8; the hand-written encoder in EventPayloadHashUtil must keep producing the same bytes.
+ */
+public class EventPayloadHashUtilTest {
+
+    // the original implementation
+    private static String referenceHash(EventRequest e) throws Exception {
+        String payload = String.format("%s|%s|%s|%s|%s|%s|%s",
+                e.eventId(),
+                e.eventTime(),
+                e.machineId(),
+                e.durationMs(),
+                e.defectCount(),
+                e.factoryId() != null ? e.factoryId() : "",
+                e.lineId() != null ? e.lineId() : "");
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(payload.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest);
+    }
+
+    private static void assertSameAsReference(EventRequest e) throws Exception {
+        assertThat(EventPayloadHashUtil.computeHash(e)).as("%s", e).isEqualTo(referenceHash(e));
+    }
+
+    @Test
+    void edgeCasesShouldHashLikeTheFormattedPayload() throws Exception {
+        List<EventRequest> events = List.of(
+                new EventRequest("E-1", Instant.parse("2026-01-15T10:00:00Z"), "M-1", 1000L, 0, "F01", "L1"),
+                new EventRequest("E-2", Instant.parse("2026-01-15T10:00:00.120Z"), "M-1", 0L, -1, null, null),
+                new EventRequest("E-3", Instant.parse("2026-01-15T10:00:00.000120Z"), "M-1", -5L, 7, "", ""),
+                new EventRequest("E-4", Instant.parse("2026-01-15T10:00:00.000000001Z"), "M-1", Long.MAX_VALUE, Integer.MAX_VALUE, "F", "L"),
+                new EventRequest("E-5", Instant.parse("2024-02-29T23:59:59.999999999Z"), "M-1", Long.MIN_VALUE, Integer.MIN_VALUE, "F", "L"),
+                new EventRequest("E-6", Instant.EPOCH, "M-1", 1L, 1, "F", "L"),
+                new EventRequest("E-7", Instant.parse("1969-12-31T23:59:59.5Z"), "M-1", 1L, 1, "F", "L"),
+                new EventRequest("E-8", Instant.parse("9999-12-31T23:59:59Z"), "M-1", 1L, 1, "F", "L"),
+                new EventRequest("E-9", Instant.parse("+10000-01-01T00:00:00Z"), "M-1", 1L, 1, "F", "L"),
+                new EventRequest("É-ü-€", Instant.parse("2026-01-15T10:00:00Z"), "機械-1", 1L, 1, "Fäbrik", "L😀"),
+                // unpaired surrogates are encoded as '?'
+                new EventRequest("E-\uD800", Instant.parse("2026-01-15T10:00:00Z"), "M-\uDC00x", 1L, 1, "\uD83D", "L"),
+                new EventRequest(null, null, null, null, null, null, null)
+        );
+        for (EventRequest e : events) {
+            assertSameAsReference(e);
+        }
+    }
+
+    @Test
+    void randomEventsShouldHashLikeTheFormattedPayload() throws Exception {
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            assertSameAsReference(new EventRequest(
+                    randomString(random),
+                    randomInstant(random),
+                    randomString(random),
+                    random.nextInt(10) == 0 ? null : random.nextLong() >> random.nextInt(64),
+                    random.nextInt(10) == 0 ? null : random.nextInt() >> random.nextInt(32),
+                    random.nextInt(5) == 0 ? null : randomString(random),
+                    random.nextInt(5) == 0 ? null : randomString(random)));
+        }
+    }
+
+    private static Instant randomInstant(Random random) {
+        // mostly the fast path (1970..9999), some before 1970 and after 9999
+        long second = switch (random.nextInt(10)) {
+            case 0 -> -random.nextLong(62_000_000_000L);
+            case 1 -> 253_402_300_800L + random.nextLong(1_000_000_000_000L);
+            default -> random.nextLong(253_402_300_800L);
+        };
+        int nano = switch (random.nextInt(4)) {
+            case 0 -> 0;
+            case 1 -> random.nextInt(1000) * 1_000_000;
+            case 2 -> random.nextInt(1_000_000) * 1000;
+            default -> random.nextInt(1_000_000_000);
+        };
+        return Instant.ofEpochSecond(second, nano);
+    }
+
+    private static String randomString(Random random) {
+        int length = random.nextInt(24);
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            switch (random.nextInt(6)) {
+                case 0 -> sb.append((char) (0x80 + random.nextInt(0x780)));      // 2-byte UTF-8
+                case 1 -> sb.append((char) (0x800 + random.nextInt(0xd000)));    // 3-byte UTF-8, below surrogates
+                case 2 -> sb.appendCodePoint(0x10000 + random.nextInt(0x100000)); // surrogate pair
+                case 3 -> sb.append((char) (0xd800 + random.nextInt(0x800)));    // lone surrogate
+                default -> sb.append((char) (0x20 + random.nextInt(0x5f)));      // ASCII
+            }
+        }
+        return sb.toString();
+    }
+}
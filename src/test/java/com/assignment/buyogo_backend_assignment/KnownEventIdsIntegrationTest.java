@@ -0,0 +1,105 @@
+package com.assignment.buyogo_backend_assignment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource(properties = {
+        "events.ingest.known-ids.enabled=true",
+        "events.ingest.known-ids.max-entries=1000"
+})
+public class KnownEventIdsIntegrationTest extends BaseIntegrationTest {
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    ObjectMapper objectMapper;
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    private String batch(List<Map<String, Object>> events) throws Exception {
+        return objectMapper.writeValueAsString(events);
+    }
+
+    private Map<String, Object> event(String id, Instant time, int defect) {
+        return Map.of(
+                "eventId", id,
+                "eventTime", time.toString(),
+                "machineId", "M-KNOWN",
+                "durationMs", 1000,
+                "defectCount", defect
+        );
+    }
+
+    private double hits() {
+        return meterRegistry.get("cache.gets").tag("cache", "ingest.known-ids").tag("result", "hit")
+                .functionCounter().count();
+    }
+
+    @Test
+    void exactResendShouldBeDedupedFromMemory() throws Exception {
+        Instant t = Instant.now().minusSeconds(120);
+        String json = batch(List.of(event("KN-1", t, 1), event("KN-2", t, 2)));
+
+        mockMvc.perform(post("/api/v1/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(2));
+
+        double hitsBefore = hits();
+        mockMvc.perform(post("/api/v1/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deduped").value(2))
+                .andExpect(jsonPath("$.accepted").value(0));
+        assertThat(hits() - hitsBefore).isEqualTo(2.0);
+    }
+
+    @Test
+    void changedPayloadShouldStillReachTheDatabase() throws Exception {
+        Instant t = Instant.now().minusSeconds(120);
+
+        mockMvc.perform(post("/api/v1/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(batch(List.of(event("KN-3", t, 1)))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(1));
+
+        mockMvc.perform(post("/api/v1/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(batch(List.of(event("KN-3", t, 5)))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.updated").value(1));
+
+        // the first version is no longer the stored one, so it is an update again, not a dedup
+        mockMvc.perform(post("/api/v1/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(batch(List.of(event("KN-3", t, 1)))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.updated").value(1));
+
+        mockMvc.perform(post("/api/v1/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(batch(List.of(event("KN-3", t, 1)))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deduped").value(1));
+    }
+}
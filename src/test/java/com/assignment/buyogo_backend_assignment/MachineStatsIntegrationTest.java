@@ -0,0 +1,164 @@
+package com.assignment.buyogo_backend_assignment;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class MachineStatsIntegrationTest extends BaseIntegrationTest {
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    ObjectMapper objectMapper;
+
+    private Map<String, Object> event(String id, Instant time, String machineId, String factoryId, int defect) {
+        return Map.of(
+                "eventId", id,
+                "eventTime", time.toString(),
+                "machineId", machineId,
+                "durationMs", 1000L,
+                "defectCount", defect,
+                "factoryId", factoryId,
+                "lineId", "L1"
+        );
+    }
+
+    private void ingest(List<Map<String, Object>> events) throws Exception {
+        mockMvc.perform(post("/api/v1/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(events)))
+                .andExpect(status().isOk());
+    }
+
+    private List<JsonNode> streamed(MockHttpServletRequestBuilder request) throws Exception {
+        MvcResult started = mockMvc.perform(request)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            if (!line.isEmpty()) {
+                lines.add(objectMapper.readTree(line));
+            }
+        }
+        return lines;
+    }
+
+    private JsonNode single(String machineId, Instant start, Instant end) throws Exception {
+        String body = mockMvc.perform(get("/api/v1/stats")
+                        .param("machineId", machineId)
+                        .param("start", start.toString())
+                        .param("end", end.toString()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+
+    @Test
+    void listedMachinesShouldMatchSingleMachineStats() throws Exception {
+        Instant base = Instant.now().truncatedTo(ChronoUnit.HOURS).minus(4, ChronoUnit.HOURS);
+        Instant start = base.plus(40, ChronoUnit.MINUTES);
+        Instant end = base.plus(200, ChronoUnit.MINUTES);
+
+        ingest(List.of(
+                event("MS-1", base.plus(10, ChronoUnit.MINUTES), "M-BULK-1", "F-BULK", 7),  // before start
+                event("MS-2", base.plus(50, ChronoUnit.MINUTES), "M-BULK-1", "F-BULK", 1),  // partial first hour
+                event("MS-3", base.plus(70, ChronoUnit.MINUTES), "M-BULK-1", "F-BULK", 2),  // whole hour
+                event("MS-4", base.plus(150, ChronoUnit.MINUTES), "M-BULK-1", "F-BULK", -1), // defects ignored
+                event("MS-5", base.plus(185, ChronoUnit.MINUTES), "M-BULK-2", "F-BULK", 40), // partial last hour
+                event("MS-6", base.plus(90, ChronoUnit.MINUTES), "M-BULK-2", "F-BULK", 3)
+        ));
+
+        List<JsonNode> lines = streamed(get("/api/v1/stats/machines")
+                .param("machineIds", "M-BULK-2,M-BULK-UNKNOWN,M-BULK-1,M-BULK-2")
+                .param("start", start.toString())
+                .param("end", end.toString()));
+
+        // request order, duplicates once, unknown machines with zero counts
+        assertThat(lines).extracting(line -> line.get("machineId").asText())
+                .containsExactly("M-BULK-2", "M-BULK-UNKNOWN", "M-BULK-1");
+        assertThat(lines.get(0)).isEqualTo(single("M-BULK-2", start, end));
+        assertThat(lines.get(1)).isEqualTo(single("M-BULK-UNKNOWN", start, end));
+        assertThat(lines.get(2)).isEqualTo(single("M-BULK-1", start, end));
+
+        assertThat(lines.get(0).get("eventsCount").asLong()).isEqualTo(2);
+        assertThat(lines.get(0).get("defectsCount").asLong()).isEqualTo(43);
+        assertThat(lines.get(0).get("status").asText()).isEqualTo("Warning");
+        assertThat(lines.get(1).get("eventsCount").asLong()).isZero();
+        assertThat(lines.get(1).get("status").asText()).isEqualTo("Healthy");
+        assertThat(lines.get(2).get("eventsCount").asLong()).isEqualTo(3);
+        assertThat(lines.get(2).get("defectsCount").asLong()).isEqualTo(3);
+    }
+
+    @Test
+    void factoryShouldStreamEveryMachineWithEvents() throws Exception {
+        Instant start = Instant.now().minus(2, ChronoUnit.HOURS);
+        Instant end = Instant.now();
+
+        ingest(List.of(
+                event("MF-1", start.plusSeconds(60), "M-FAC-B", "F-FAC", 2),
+                event("MF-2", start.plusSeconds(120), "M-FAC-B", "F-FAC", 1),
+                event("MF-3", start.plusSeconds(180), "M-FAC-A", "F-FAC", 0),
+                event("MF-4", start.minusSeconds(60), "M-FAC-C", "F-FAC", 5),    // before start
+                event("MF-5", start.plusSeconds(240), "M-FAC-D", "F-OTHER", 5)
+        ));
+
+        List<JsonNode> lines = streamed(get("/api/v1/stats/machines")
+                .param("factoryId", "F-FAC")
+                .param("start", start.toString())
+                .param("end", end.toString()));
+
+        assertThat(lines).extracting(line -> line.get("machineId").asText())
+                .containsExactly("M-FAC-A", "M-FAC-B");
+        assertThat(lines.get(0)).isEqualTo(single("M-FAC-A", start, end));
+        assertThat(lines.get(1)).isEqualTo(single("M-FAC-B", start, end));
+        assertThat(lines.get(1).get("eventsCount").asLong()).isEqualTo(2);
+        assertThat(lines.get(1).get("defectsCount").asLong()).isEqualTo(3);
+
+        assertThat(streamed(get("/api/v1/stats/machines")
+                .param("factoryId", "F-FAC-UNKNOWN")
+                .param("start", start.toString())
+                .param("end", end.toString()))).isEmpty();
+    }
+
+    @Test
+    void exactlyOneOfMachineIdsAndFactoryIdIsRequired() throws Exception {
+        Instant end = Instant.now();
+        Instant start = end.minus(1, ChronoUnit.HOURS);
+
+        mockMvc.perform(get("/api/v1/stats/machines")
+                        .param("machineIds", "M-1")
+                        .param("factoryId", "F01")
+                        .param("start", start.toString())
+                        .param("end", end.toString()))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("exactly one of machineIds or factoryId is required"));
+
+        mockMvc.perform(get("/api/v1/stats/machines")
+                        .param("start", start.toString())
+                        .param("end", end.toString()))
+                .andExpect(status().isBadRequest());
+    }
+}
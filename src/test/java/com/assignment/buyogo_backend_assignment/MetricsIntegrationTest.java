@@ -0,0 +1,80 @@
+package com.assignment.buyogo_backend_assignment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+@TestPropertySource(properties = {
+        "management.endpoints.web.exposure.include=prometheus",
+        "management.metrics.distribution.percentiles-histogram.hikaricp.connections.acquire=true"
+})
+public class MetricsIntegrationTest extends BaseIntegrationTest {
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    ObjectMapper objectMapper;
+
+    private Map<String, Object> event(String id, Instant time) {
+        return Map.of(
+                "eventId", id,
+                "eventTime", time.toString(),
+                "machineId", "M-METRICS",
+                "durationMs", 1000,
+                "defectCount", 1
+        );
+    }
+
+    @Test
+    void ingestAndStatsShouldBeScrapeable() throws Exception {
+        Instant now = Instant.now();
+        String json = objectMapper.writeValueAsString(List.of(
+                event("MET-1", now.minusSeconds(60)),
+                event("MET-2", now.plusSeconds(3600))));
+
+        mockMvc.perform(post("/api/v1/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(1))
+                .andExpect(jsonPath("$.rejected").value(1));
+
+        mockMvc.perform(get("/api/v1/stats")
+                        .param("machineId", "M-METRICS")
+                        .param("start", now.minusSeconds(3600).toString())
+                        .param("end", now.toString()))
+                .andExpect(status().isOk());
+
+        String scrape = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(scrape)
+                .contains("events_ingest_events_total{outcome=\"accepted\"")
+                .contains("events_ingest_rejected_total{reason=\"future_event_time\"")
+                .contains("events_ingest_request_seconds_bucket{path=\"batch\"")
+                .contains("events_ingest_stage_seconds_bucket{stage=\"prepare\"")
+                .contains("events_ingest_upsert_seconds_bucket{path=\"arrays\"")
+                .contains("events_stats_query_seconds_count{query=\"machine-rollup\"")
+                .contains("hikaricp_connections_pending")
+                .contains("hikaricp_connections_acquire_seconds_bucket");
+    }
+}
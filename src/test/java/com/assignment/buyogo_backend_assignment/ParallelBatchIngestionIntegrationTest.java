@@ -0,0 +1,78 @@
+package com.assignment.buyogo_backend_assignment;
+
+import com.assignment.buyogo_backend_assignment.entity.Event;
+import com.assignment.buyogo_backend_assignment.repository.EventRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource(properties = {
+        "events.ingest.parallel.min-batch-size=10",
+        "events.ingest.parallel.chunk-size=4",
+        "events.ingest.parallel.threads=3"
+})
+public class ParallelBatchIngestionIntegrationTest extends BaseIntegrationTest {
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    ObjectMapper objectMapper;
+    @Autowired
+    EventRepository eventRepository;
+
+    private Map<String, Object> event(String id, Instant time, long duration, int defect) {
+        return Map.of(
+                "eventId", id,
+                "eventTime", time.toString(),
+                "machineId", "M-PAR",
+                "durationMs", duration,
+                "defectCount", defect
+        );
+    }
+
+    @Test
+    void pipelinedBatchShouldKeepRejectionOrderAndLastCopyWins() throws Exception {
+        Instant t = Instant.now().minusSeconds(600);
+        var payload = new ArrayList<Map<String, Object>>();
+        for (int i = 0; i < 30; i++) {
+            // every 7th event is invalid, spread over several chunks
+            long duration = i % 7 == 3 ? -1 : 1000;
+            payload.add(event("PAR-" + i, t.plusSeconds(i), duration, 1));
+        }
+        // same id as PAR-0 (first chunk) in the last chunk with another payload
+        payload.add(event("PAR-0", t, 1000, 9));
+
+        String body = mockMvc.perform(post("/api/v1/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(payload)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(26))
+                .andExpect(jsonPath("$.deduped").value(0))
+                .andExpect(jsonPath("$.collapsed").value(1))
+                .andExpect(jsonPath("$.rejected").value(4))
+                .andReturn().getResponse().getContentAsString();
+
+        List<String> rejectedIds = new ArrayList<>();
+        objectMapper.readTree(body).get("rejections").forEach(r -> rejectedIds.add(r.get("eventId").asText()));
+        assertThat(rejectedIds).containsExactly("PAR-3", "PAR-10", "PAR-17", "PAR-24");
+
+        Event stored = eventRepository.findByEventId("PAR-0").orElseThrow();
+        assertThat(stored.getDefectCount()).isEqualTo(9);
+    }
+}
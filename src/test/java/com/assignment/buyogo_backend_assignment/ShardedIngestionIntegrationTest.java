@@ -0,0 +1,185 @@
+package com.assignment.buyogo_backend_assignment;
+
+import com.assignment.buyogo_backend_assignment.entity.Event;
+import com.assignment.buyogo_backend_assignment.repository.EventRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource(properties = {
+        "events.ingest.sharding.enabled=true",
+        "events.ingest.sharding.shards=3",
+        // batches of 100+ take the parallel prepare path
+        "events.ingest.parallel.min-batch-size=100"
+})
+public class ShardedIngestionIntegrationTest extends BaseIntegrationTest {
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    ObjectMapper objectMapper;
+    @Autowired
+    MeterRegistry meterRegistry;
+    @Autowired
+    EventRepository eventRepository;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    private Map<String, Object> event(String id, Instant time, String machineId, int defect) {
+        return Map.of(
+                "eventId", id,
+                "eventTime", time.toString(),
+                "machineId", machineId,
+                "durationMs", 1000,
+                "defectCount", defect
+        );
+    }
+
+    private double shardEvents() {
+        return meterRegistry.find("events.ingest.shard.events").counters().stream()
+                .mapToDouble(Counter::count)
+                .sum();
+    }
+
+    @Test
+    void overlappingConcurrentBatchesShouldCountEveryIdOnce() throws Exception {
+        Instant t = Instant.now().minusSeconds(600);
+        double writtenBefore = shardEvents();
+
+        // every request sends the same 20 ids spread over 6 machines
+        int threads = 6;
+        ExecutorService es = Executors.newFixedThreadPool(threads);
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger deduped = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int r = 0; r < threads; r++) {
+            var payload = new ArrayList<Map<String, Object>>();
+            for (int i = 0; i < 20; i++) {
+                payload.add(event("SH-" + i, t.plusSeconds(i), "M-SH-" + (i % 6), 1));
+            }
+            String json = objectMapper.writeValueAsString(payload);
+            futures.add(es.submit(() -> {
+                String body = mockMvc.perform(post("/api/v1/events/batch")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(json))
+                        .andExpect(status().isOk())
+                        .andReturn().getResponse().getContentAsString();
+                accepted.addAndGet(objectMapper.readTree(body).get("accepted").asInt());
+                deduped.addAndGet(objectMapper.readTree(body).get("deduped").asInt());
+                return null;
+            }));
+        }
+        for (Future<?> f : futures) {
+            f.get(20, TimeUnit.SECONDS);
+        }
+        es.shutdownNow();
+
+        assertThat(accepted.get()).isEqualTo(20);
+        assertThat(deduped.get()).isEqualTo(20 * (threads - 1));
+        assertThat(shardEvents() - writtenBefore).isEqualTo(20.0 * threads);
+    }
+
+    @Test
+    void largeBatchShouldBeWrittenByTheShards() throws Exception {
+        Instant t = Instant.now().minusSeconds(600);
+        double writtenBefore = shardEvents();
+        var payload = new ArrayList<Map<String, Object>>();
+        for (int i = 0; i < 150; i++) {
+            payload.add(event("SH-LARGE-" + i, t.plusMillis(i), "M-SH-" + (i % 6), 1));
+        }
+
+        mockMvc.perform(post("/api/v1/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(payload)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(150));
+
+        assertThat(shardEvents() - writtenBefore).isEqualTo(150.0);
+    }
+
+    @Test
+    void repeatedIdOnAnotherMachineShouldStillKeepLastCopy() throws Exception {
+        Instant t = Instant.now().minusSeconds(600);
+        var payload = List.of(
+                event("SH-MOVE", t, "M-SH-A", 1),
+                event("SH-OTHER", t, "M-SH-B", 2),
+                event("SH-MOVE", t, "M-SH-C", 7)
+        );
+
+        mockMvc.perform(post("/api/v1/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(payload)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(2))
+                .andExpect(jsonPath("$.collapsed").value(1));
+
+        Event stored = eventRepository.findByEventId("SH-MOVE").orElseThrow();
+        assertThat(stored.getMachineId()).isEqualTo("M-SH-C");
+        assertThat(stored.getDefectCount()).isEqualTo(7);
+    }
+
+    private Future<String> postAsync(ExecutorService es, List<Map<String, Object>> payload) throws Exception {
+        String json = objectMapper.writeValueAsString(payload);
+        return es.submit(() -> mockMvc.perform(post("/api/v1/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+    }
+
+    @Test
+    void sameIdFromTwoQueuedRequestsShouldBeWrittenInTurn() throws Exception {
+        Instant t = Instant.now().minusSeconds(600);
+        // SH-SLOW keeps the shard of M-SH-Q busy while the two requests queue up behind it
+        jdbcTemplate.execute("""
+                CREATE FUNCTION slow_test_event() RETURNS trigger LANGUAGE plpgsql AS $$
+                BEGIN
+                    IF NEW.event_id = 'SH-SLOW' THEN
+                        PERFORM pg_sleep(1);
+                    END IF;
+                    RETURN NEW;
+                END
+                $$""");
+        jdbcTemplate.execute("CREATE TRIGGER slow_test_event BEFORE INSERT ON event_keys "
+                + "FOR EACH ROW EXECUTE FUNCTION slow_test_event()");
+        ExecutorService es = Executors.newFixedThreadPool(3);
+        try {
+            Future<String> slow = postAsync(es, List.of(event("SH-SLOW", t, "M-SH-Q", 0)));
+            Thread.sleep(300);
+            Future<String> first = postAsync(es, List.of(event("SH-DUP", t, "M-SH-Q", 1)));
+            Thread.sleep(100);
+            Future<String> second = postAsync(es, List.of(event("SH-DUP", t, "M-SH-Q", 5)));
+
+            slow.get(20, TimeUnit.SECONDS);
+            assertThat(objectMapper.readTree(first.get(20, TimeUnit.SECONDS)).get("accepted").asInt()).isEqualTo(1);
+            assertThat(objectMapper.readTree(second.get(20, TimeUnit.SECONDS)).get("updated").asInt()).isEqualTo(1);
+        } finally {
+            es.shutdownNow();
+            jdbcTemplate.execute("DROP TRIGGER slow_test_event ON event_keys");
+            jdbcTemplate.execute("DROP FUNCTION slow_test_event()");
+        }
+
+        assertThat(eventRepository.findByEventId("SH-DUP").orElseThrow().getDefectCount()).isEqualTo(5);
+    }
+}
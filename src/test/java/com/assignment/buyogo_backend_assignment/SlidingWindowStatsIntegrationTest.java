@@ -0,0 +1,123 @@
+package com.assignment.buyogo_backend_assignment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource(properties = {
+        "events.stats.window.enabled=true",
+        "events.stats.window.bucket-seconds=60",
+        "events.stats.window.history-hours=2"
+})
+public class SlidingWindowStatsIntegrationTest extends BaseIntegrationTest {
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    ObjectMapper objectMapper;
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    private Map<String, Object> event(String id, String machineId, Instant time, int defect) {
+        return Map.of(
+                "eventId", id,
+                "eventTime", time.toString(),
+                "machineId", machineId,
+                "durationMs", 1000L,
+                "defectCount", defect
+        );
+    }
+
+    private void ingest(List<Map<String, Object>> payload) throws Exception {
+        mockMvc.perform(post("/api/v1/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(payload)))
+                .andExpect(status().isOk());
+    }
+
+    private void expectStats(String machineId, Instant start, Instant end, long events, long defects) throws Exception {
+        mockMvc.perform(get("/api/v1/stats")
+                        .param("machineId", machineId)
+                        .param("start", start.toString())
+                        .param("end", end.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.eventsCount").value(events))
+                .andExpect(jsonPath("$.defectsCount").value(defects));
+    }
+
+    private double memoryHits() {
+        return meterRegistry.get("events.stats.window.queries").tag("result", "memory").counter().count();
+    }
+
+    @Test
+    void recentWindowShouldBeServedFromMemoryAndFollowInserts() throws Exception {
+        // start and end cut through minute buckets that hold events on both sides
+        Instant start = Instant.now().truncatedTo(ChronoUnit.MINUTES).minus(30, ChronoUnit.MINUTES).plusSeconds(30);
+        Instant end = start.plus(20, ChronoUnit.MINUTES);
+
+        ingest(List.of(
+                event("SW-A-1", "M-SW-A", start.minusSeconds(10), 7),   // same bucket as start, outside
+                event("SW-A-2", "M-SW-A", start.plusSeconds(5), 2),     // same bucket as start, inside
+                event("SW-A-3", "M-SW-A", start.plusSeconds(300), -1),  // counted, no defects
+                event("SW-A-4", "M-SW-A", end.minusSeconds(1), 1),      // same bucket as end, inside
+                event("SW-A-5", "M-SW-A", end.plusSeconds(1), 9)        // same bucket as end, outside
+        ));
+
+        double hitsBefore = memoryHits();
+        expectStats("M-SW-A", start, end, 3, 3);
+
+        // applied to the loaded window without reloading
+        ingest(List.of(
+                event("SW-A-6", "M-SW-A", start.plusSeconds(600), 4),
+                event("SW-A-2", "M-SW-A", start.plusSeconds(5), 2)      // replay, no change
+        ));
+        expectStats("M-SW-A", start, end, 4, 7);
+        expectStats("M-SW-A", start.truncatedTo(ChronoUnit.MINUTES), end.plus(1, ChronoUnit.MINUTES), 6, 23);
+
+        assertThat(memoryHits() - hitsBefore).isEqualTo(3);
+    }
+
+    @Test
+    void updateMovingEventToAnotherMachineShouldBeReflected() throws Exception {
+        Instant t = Instant.now().minus(10, ChronoUnit.MINUTES);
+        Instant start = t.minus(1, ChronoUnit.HOURS);
+        Instant end = t.plus(1, ChronoUnit.HOURS);
+
+        ingest(List.of(event("SW-B-1", "M-SW-B", t, 3)));
+        expectStats("M-SW-B", start, end, 1, 3);
+        expectStats("M-SW-C", start, end, 0, 0);
+
+        // newer payload for the same id on another machine
+        ingest(List.of(event("SW-B-1", "M-SW-C", t, 5)));
+        expectStats("M-SW-B", start, end, 0, 0);
+        expectStats("M-SW-C", start, end, 1, 5);
+    }
+
+    @Test
+    void rangeOlderThanHistoryShouldFallBackToDatabase() throws Exception {
+        Instant t = Instant.now().minus(5, ChronoUnit.HOURS);
+        ingest(List.of(event("SW-D-1", "M-SW-D", t, 2)));
+
+        double hitsBefore = memoryHits();
+        expectStats("M-SW-D", t.minus(1, ChronoUnit.HOURS), t.plus(1, ChronoUnit.HOURS), 1, 2);
+        assertThat(memoryHits()).isEqualTo(hitsBefore);
+    }
+}
@@ -0,0 +1,124 @@
+package com.assignment.buyogo_backend_assignment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource(properties = {
+        "events.stats.cache.enabled=true",
+        "events.stats.cache.ttl-seconds=300"
+})
+public class StatsCacheIntegrationTest extends BaseIntegrationTest {
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    ObjectMapper objectMapper;
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    private Map<String, Object> event(String id, String machineId, Instant time, int defect, String lineId) {
+        return Map.of(
+                "eventId", id,
+                "eventTime", time.toString(),
+                "machineId", machineId,
+                "durationMs", 1000L,
+                "defectCount", defect,
+                "factoryId", "F-SC",
+                "lineId", lineId
+        );
+    }
+
+    @SafeVarargs
+    private void ingest(Map<String, Object>... events) throws Exception {
+        mockMvc.perform(post("/api/v1/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(events))))
+                .andExpect(status().isOk());
+    }
+
+    private void expectEvents(String machineId, Instant start, Instant end, long events) throws Exception {
+        mockMvc.perform(get("/api/v1/stats")
+                        .param("machineId", machineId)
+                        .param("start", start.toString())
+                        .param("end", end.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.eventsCount").value(events));
+    }
+
+    private double hits(String cache) {
+        return meterRegistry.get("cache.gets").tag("cache", cache).tag("result", "hit").functionCounter().count();
+    }
+
+    @Test
+    void machineStatsShouldOnlyBeEvictedByOverlappingEvents() throws Exception {
+        Instant start = Instant.now().minus(2, ChronoUnit.HOURS);
+        Instant end = start.plus(1, ChronoUnit.HOURS);
+        ingest(event("SC-1", "M-SC-1", start.plusSeconds(60), 1, "L1"));
+
+        expectEvents("M-SC-1", start, end, 1);
+        double hitsBefore = hits("stats.machine");
+        expectEvents("M-SC-1", start, end, 1);
+        assertThat(hits("stats.machine") - hitsBefore).isEqualTo(1);
+
+        // same machine outside the range, other machine inside it: entry stays
+        ingest(event("SC-2", "M-SC-1", end.plusSeconds(60), 1, "L1"),
+                event("SC-3", "M-SC-2", start.plusSeconds(120), 1, "L1"));
+        expectEvents("M-SC-1", start, end, 1);
+        assertThat(hits("stats.machine") - hitsBefore).isEqualTo(2);
+
+        // inside the range: evicted and recomputed
+        ingest(event("SC-4", "M-SC-1", end.minusSeconds(1), 1, "L1"));
+        expectEvents("M-SC-1", start, end, 2);
+        assertThat(hits("stats.machine") - hitsBefore).isEqualTo(2);
+    }
+
+    @Test
+    void defectLinesShouldBeEvictedByOverlappingFactoryEvents() throws Exception {
+        Instant from = Instant.now().minus(3, ChronoUnit.HOURS);
+        Instant to = from.plus(1, ChronoUnit.HOURS);
+        ingest(event("SC-L-1", "M-SC-3", from.plusSeconds(60), 2, "L1"));
+
+        var request = get("/api/v1/stats/top-defect-lines")
+                .param("factoryId", "F-SC")
+                .param("from", from.toString())
+                .param("to", to.toString());
+        mockMvc.perform(request)
+                .andExpect(jsonPath("$[0].lineId").value("L1"));
+
+        ingest(event("SC-L-2", "M-SC-3", from.plusSeconds(120), 5, "L2"));
+        mockMvc.perform(request)
+                .andExpect(jsonPath("$[0].lineId").value("L2"))
+                .andExpect(jsonPath("$[0].totalDefects").value(5));
+    }
+
+    @Test
+    void updateShouldClearCachedStats() throws Exception {
+        Instant start = Instant.now().minus(5, ChronoUnit.HOURS);
+        Instant end = start.plus(1, ChronoUnit.HOURS);
+        ingest(event("SC-U-1", "M-SC-4", start.plusSeconds(60), 1, "L1"));
+        expectEvents("M-SC-4", start, end, 1);
+
+        // moved to another machine and out of the range by a newer payload
+        ingest(event("SC-U-1", "M-SC-5", end.plusSeconds(60), 1, "L1"));
+        expectEvents("M-SC-4", start, end, 0);
+    }
+}
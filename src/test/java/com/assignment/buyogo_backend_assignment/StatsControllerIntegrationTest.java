@@ -12,6 +12,8 @@ import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -71,6 +73,53 @@ public class StatsControllerIntegrationTest extends BaseIntegrationTest {
                 .andExpect(jsonPath("$.defectsCount").value(5));
     }
 
+    @Test
+    void statsShouldCombineHourlyRollupWithPartialHours() throws Exception {
+        Instant base = Instant.now().truncatedTo(ChronoUnit.HOURS).minus(4, ChronoUnit.HOURS);
+        Instant start = base.plus(40, ChronoUnit.MINUTES);
+        Instant end = base.plus(200, ChronoUnit.MINUTES);
+
+        var payload = List.of(
+                event("H-1", base.plus(10, ChronoUnit.MINUTES), 7, "L1"),  // before start
+                event("H-2", base.plus(50, ChronoUnit.MINUTES), 1, "L1"),  // partial first hour
+                event("H-3", base.plus(70, ChronoUnit.MINUTES), 2, "L1"),  // whole hour
+                event("H-4", base.plus(150, ChronoUnit.MINUTES), -1, "L1"), // whole hour, defects ignored
+                event("H-5", base.plus(185, ChronoUnit.MINUTES), 4, "L1"), // partial last hour
+                event("H-6", base.plus(210, ChronoUnit.MINUTES), 9, "L1")  // after end
+        );
+        mockMvc.perform(post("/api/v1/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(payload)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/v1/stats")
+                        .param("machineId", "M-1")
+                        .param("start", start.toString())
+                        .param("end", end.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.eventsCount").value(4))
+                .andExpect(jsonPath("$.defectsCount").value(7));
+
+        // changed payloads move H-3 out of the window and H-1 into a whole hour with new defects
+        var updates = List.of(
+                event("H-3", base.plus(10, ChronoUnit.MINUTES), 2, "L1"),
+                event("H-1", base.plus(80, ChronoUnit.MINUTES), 5, "L1")
+        );
+        mockMvc.perform(post("/api/v1/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(updates)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.updated").value(2));
+
+        mockMvc.perform(get("/api/v1/stats")
+                        .param("machineId", "M-1")
+                        .param("start", start.toString())
+                        .param("end", end.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.eventsCount").value(4))
+                .andExpect(jsonPath("$.defectsCount").value(10));
+    }
+
     @Test
     void topDefectLinesShouldReturnSorted() throws Exception {
         Instant from = Instant.now().minusSeconds(3600);
@@ -97,4 +146,57 @@ public class StatsControllerIntegrationTest extends BaseIntegrationTest {
                 .andExpect(jsonPath("$[0].lineId").value("L2"))
                 .andExpect(jsonPath("$[0].totalDefects").value(5));
     }
+
+    @Test
+    void topDefectLinesShouldRankByPercentAndLimitInQuery() throws Exception {
+        Instant from = Instant.now().minusSeconds(3600);
+        Instant to = Instant.now();
+
+        // L1: 6 defects over 6 events (100%), L2: 3 over 1 (300%), L3: 1 over 3 (33.33%)
+        var payload = new ArrayList<Map<String, Object>>();
+        for (int i = 0; i < 6; i++) {
+            payload.add(event("P-L1-" + i, from.plusSeconds(10 + i), 1, "L1"));
+        }
+        payload.add(event("P-L2-0", from.plusSeconds(30), 3, "L2"));
+        payload.add(event("P-L3-0", from.plusSeconds(40), 1, "L3"));
+        payload.add(event("P-L3-1", from.plusSeconds(41), 0, "L3"));
+        payload.add(event("P-L3-2", from.plusSeconds(42), 0, "L3"));
+
+        mockMvc.perform(post("/api/v1/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(payload)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/v1/stats/top-defect-lines")
+                        .param("factoryId", "F01")
+                        .param("from", from.toString())
+                        .param("to", to.toString())
+                        .param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].lineId").value("L1"))
+                .andExpect(jsonPath("$[1].lineId").value("L2"));
+
+        mockMvc.perform(get("/api/v1/stats/top-defect-lines")
+                        .param("factoryId", "F01")
+                        .param("from", from.toString())
+                        .param("to", to.toString())
+                        .param("rankBy", "percent"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].lineId").value("L2"))
+                .andExpect(jsonPath("$[0].defectsPercent").value(300.0))
+                .andExpect(jsonPath("$[1].lineId").value("L1"))
+                .andExpect(jsonPath("$[2].lineId").value("L3"))
+                .andExpect(jsonPath("$[2].defectsPercent").value(33.33))
+                .andExpect(jsonPath("$[2].eventCount").value(3));
+
+        mockMvc.perform(get("/api/v1/stats/top-defect-lines")
+                        .param("factoryId", "F01")
+                        .param("from", from.toString())
+                        .param("to", to.toString())
+                        .param("rankBy", "worst"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").exists());
+    }
 }
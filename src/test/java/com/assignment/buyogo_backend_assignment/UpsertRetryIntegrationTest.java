@@ -0,0 +1,192 @@
+package com.assignment.buyogo_backend_assignment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource(properties = {
+        // long enough that the other transaction has given up its locks before the retry
+        "events.ingest.retry.base-backoff-ms=300",
+        "events.ingest.retry.max-backoff-ms=300"
+})
+public class UpsertRetryIntegrationTest extends BaseIntegrationTest {
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    ObjectMapper objectMapper;
+    @Autowired
+    MeterRegistry meterRegistry;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    DataSource dataSource;
+
+    private static boolean batchWaitsOnLock(Statement st) throws SQLException {
+        // pg_stat_activity is read once per transaction unless the snapshot is dropped
+        st.execute("SELECT pg_stat_clear_snapshot()");
+        try (ResultSet rs = st.executeQuery("SELECT count(*) FROM pg_stat_activity "
+                + "WHERE pid <> pg_backend_pid() AND wait_event_type = 'Lock' AND query LIKE '%ingest_events(%'")) {
+            rs.next();
+            return rs.getLong(1) > 0;
+        }
+    }
+
+    @Test
+    void batchChosenAsDeadlockVictimShouldBeRetried() throws Exception {
+        Instant t = Instant.now().minus(2, ChronoUnit.HOURS);
+        Instant hour = t.truncatedTo(ChronoUnit.HOURS);
+        double retriesBefore = meterRegistry.get("events.ingest.upsert.retries").tag("reason", "deadlock").counter().count();
+
+        jdbcTemplate.update("INSERT INTO machines (machine_id) VALUES ('M-DL') ON CONFLICT DO NOTHING");
+
+        // the other transaction holds the rollup row the batch needs, then asks for the key the batch holds
+        CountDownLatch rollupLocked = new CountDownLatch(1);
+        ExecutorService es = Executors.newSingleThreadExecutor();
+        Future<?> other = es.submit(() -> {
+            try (Connection con = dataSource.getConnection()) {
+                con.setAutoCommit(false);
+                try (Statement st = con.createStatement()) {
+                    // the batch waits first and detects the deadlock first
+                    st.execute("SET LOCAL deadlock_timeout = '10s'");
+                    st.execute("INSERT INTO machine_hourly_stats (machine_key, hour_start, events_count, defects_count) "
+                            + "SELECT machine_key, '" + hour + "', 0, 0 FROM machines WHERE machine_id = 'M-DL'");
+                    rollupLocked.countDown();
+
+                    long deadline = System.currentTimeMillis() + 10_000;
+                    while (System.currentTimeMillis() < deadline && !batchWaitsOnLock(st)) {
+                        Thread.sleep(20);
+                    }
+                    st.execute("INSERT INTO event_keys (event_id, event_time, received_time, payload_hash) "
+                            + "VALUES ('DL-1', '" + t + "', '" + t + "', 'x')");
+                } finally {
+                    con.rollback();
+                }
+            }
+            return null;
+        });
+        assertThat(rollupLocked.await(10, TimeUnit.SECONDS)).isTrue();
+
+        var payload = List.of(Map.of(
+                "eventId", "DL-1",
+                "eventTime", t.toString(),
+                "machineId", "M-DL",
+                "durationMs", 1000,
+                "defectCount", 2
+        ));
+        mockMvc.perform(post("/api/v1/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(payload)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(1));
+
+        other.get(20, TimeUnit.SECONDS);
+        es.shutdownNow();
+
+        double retries = meterRegistry.get("events.ingest.upsert.retries").tag("reason", "deadlock").counter().count();
+        assertThat(retries - retriesBefore).isGreaterThanOrEqualTo(1.0);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT s.events_count FROM machine_hourly_stats s JOIN machines m USING (machine_key) "
+                        + "WHERE m.machine_id = 'M-DL' AND s.hour_start = ?",
+                Long.class, Timestamp.from(hour))).isEqualTo(1L);
+    }
+
+    private Map<String, Object> event(String id, Instant time, int defects) {
+        return Map.of(
+                "eventId", id,
+                "eventTime", time.toString(),
+                "machineId", "M-LO",
+                "durationMs", 1000,
+                "defectCount", defects
+        );
+    }
+
+    private String ingest(List<Map<String, Object>> payload) throws Exception {
+        return mockMvc.perform(post("/api/v1/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(payload)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+    }
+
+    private long rollupEvents(Instant hour) {
+        return jdbcTemplate.queryForObject(
+                "SELECT s.events_count FROM machine_hourly_stats s JOIN machines m USING (machine_key) "
+                        + "WHERE m.machine_id = 'M-LO' AND s.hour_start = ?",
+                Long.class, Timestamp.from(hour));
+    }
+
+    @Test
+    void crossedInsertsAndUpdatesShouldNotDeadlockOnTheRollup() throws Exception {
+        Instant h1 = Instant.now().truncatedTo(ChronoUnit.HOURS).minus(8, ChronoUnit.HOURS);
+        Instant h2 = h1.plus(1, ChronoUnit.HOURS);
+        Instant h3 = h1.plus(2, ChronoUnit.HOURS);
+        Instant h4 = h1.plus(3, ChronoUnit.HOURS);
+        ingest(List.of(event("LO-A-OLD", h1.plusSeconds(60), 1), event("LO-B-OLD", h2.plusSeconds(60), 1)));
+        double retriesBefore = meterRegistry.get("events.ingest.upsert.retries").tag("reason", "deadlock").counter().count();
+
+        // each batch inserts into the hour the other one moves an event out of; the pause runs
+        // after the rollup insert trigger (triggers fire in name order), before the update step
+        jdbcTemplate.execute("""
+                CREATE FUNCTION pause_test_batch() RETURNS trigger LANGUAGE plpgsql AS $$
+                BEGIN
+                    IF EXISTS (SELECT 1 FROM new_rows WHERE event_id LIKE 'LO-%-NEW') THEN
+                        PERFORM pg_sleep(1);
+                    END IF;
+                    RETURN NULL;
+                END
+                $$""");
+        jdbcTemplate.execute("CREATE TRIGGER events_zz_pause_test_batch AFTER INSERT ON events "
+                + "REFERENCING NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION pause_test_batch()");
+        ExecutorService es = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> a = es.submit(() -> ingest(List.of(
+                    event("LO-A-NEW", h2.plusSeconds(120), 0),
+                    event("LO-A-OLD", h3.plusSeconds(60), 2))));
+            Thread.sleep(200);
+            Future<String> b = es.submit(() -> ingest(List.of(
+                    event("LO-B-NEW", h1.plusSeconds(120), 0),
+                    event("LO-B-OLD", h4.plusSeconds(60), 2))));
+
+            for (Future<String> response : List.of(a, b)) {
+                var body = objectMapper.readTree(response.get(20, TimeUnit.SECONDS));
+                assertThat(body.get("accepted").asInt()).isEqualTo(1);
+                assertThat(body.get("updated").asInt()).isEqualTo(1);
+            }
+        } finally {
+            es.shutdownNow();
+            jdbcTemplate.execute("DROP TRIGGER events_zz_pause_test_batch ON events");
+            jdbcTemplate.execute("DROP FUNCTION pause_test_batch()");
+        }
+
+        double retries = meterRegistry.get("events.ingest.upsert.retries").tag("reason", "deadlock").counter().count();
+        assertThat(retries - retriesBefore).isZero();
+        assertThat(List.of(rollupEvents(h1), rollupEvents(h2), rollupEvents(h3), rollupEvents(h4)))
+                .containsExactly(1L, 1L, 1L, 1L);
+    }
+}
@@ -0,0 +1,179 @@
+package com.assignment.buyogo_backend_assignment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource(properties = {
+        "events.ingest.write-behind.enabled=true",
+        "events.ingest.write-behind.capacity=20",
+        "events.ingest.write-behind.flush-size=20",
+        "events.ingest.write-behind.flush-interval-ms=300",
+        "events.ingest.write-behind.enqueue-timeout-ms=0"
+})
+public class WriteBehindIngestionIntegrationTest extends BaseIntegrationTest {
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    ObjectMapper objectMapper;
+    @Autowired
+    MeterRegistry meterRegistry;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    private String batch(String prefix, int count) throws Exception {
+        Instant t = Instant.now().minusSeconds(60);
+        var payload = new ArrayList<Map<String, Object>>();
+        for (int i = 0; i < count; i++) {
+            payload.add(Map.of(
+                    "eventId", prefix + i,
+                    "eventTime", t.toString(),
+                    "machineId", "M-WB",
+                    "durationMs", 1000,
+                    "defectCount", 1
+            ));
+        }
+        return objectMapper.writeValueAsString(payload);
+    }
+
+    @Test
+    void shouldGroupConcurrentSmallBatchesIntoFewerFlushes() throws Exception {
+        long flushesBefore = meterRegistry.get("events.ingest.flush").timer().count();
+
+        int threads = 10;
+        ExecutorService es = Executors.newFixedThreadPool(threads);
+        AtomicInteger accepted = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            String json = batch("WB-" + i + "-", 2);
+            futures.add(es.submit(() -> {
+                String body = mockMvc.perform(post("/api/v1/events/batch")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(json))
+                        .andExpect(status().isOk())
+                        .andReturn().getResponse().getContentAsString();
+                accepted.addAndGet(objectMapper.readTree(body).get("accepted").asInt());
+                return null;
+            }));
+        }
+        for (Future<?> f : futures) {
+            f.get(10, TimeUnit.SECONDS);
+        }
+        es.shutdownNow();
+
+        assertThat(accepted.get()).isEqualTo(20);
+        long flushes = meterRegistry.get("events.ingest.flush").timer().count() - flushesBefore;
+        assertThat(flushes).isLessThan(threads);
+    }
+
+    @Test
+    void shouldReturn429WhenBufferIsFull() throws Exception {
+        ExecutorService es = Executors.newSingleThreadExecutor();
+        String first = batch("WB-FULL-A-", 15);
+        Future<?> pending = es.submit(() -> mockMvc.perform(post("/api/v1/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(first))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(15)));
+
+        // 15 of 20 slots are held until the flush interval ends
+        long deadline = System.currentTimeMillis() + 5000;
+        while (meterRegistry.get("events.ingest.write-behind.pending").gauge().value() < 15
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+
+        mockMvc.perform(post("/api/v1/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(batch("WB-FULL-B-", 10)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists("Retry-After"));
+
+        pending.get(10, TimeUnit.SECONDS);
+        es.shutdownNow();
+    }
+
+    @Test
+    void sameIdFromTwoRequestsInOneFlushIntervalShouldBeWrittenInTurn() throws Exception {
+        Instant t = Instant.now().minusSeconds(60);
+        ExecutorService es = Executors.newFixedThreadPool(2);
+        List<Future<String>> responses = new ArrayList<>();
+        // both arrive within one 300 ms flush interval, the second with another defect count
+        for (int defects : new int[]{1, 5}) {
+            String json = objectMapper.writeValueAsString(List.of(Map.of(
+                    "eventId", "WB-DUP",
+                    "eventTime", t.toString(),
+                    "machineId", "M-WB",
+                    "durationMs", 1000,
+                    "defectCount", defects
+            )));
+            responses.add(es.submit(() -> mockMvc.perform(post("/api/v1/events/batch")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(json))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString()));
+            Thread.sleep(100);
+        }
+
+        assertThat(objectMapper.readTree(responses.get(0).get(10, TimeUnit.SECONDS)).get("accepted").asInt()).isEqualTo(1);
+        assertThat(objectMapper.readTree(responses.get(1).get(10, TimeUnit.SECONDS)).get("updated").asInt()).isEqualTo(1);
+        es.shutdownNow();
+
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT defect_count FROM events WHERE event_id = 'WB-DUP'", Integer.class)).isEqualTo(5);
+    }
+
+    @Test
+    void failedRequestShouldNotFailTheRequestsFlushedWithIt() throws Exception {
+        Instant t = Instant.now().minusSeconds(60);
+        ExecutorService es = Executors.newFixedThreadPool(2);
+        List<Future<MvcResult>> responses = new ArrayList<>();
+        // both land in one 300 ms flush; the first eventId does not fit event_id varchar(255)
+        for (String eventId : new String[]{"WB-BAD-" + "x".repeat(300), "WB-INNOCENT"}) {
+            String json = objectMapper.writeValueAsString(List.of(Map.of(
+                    "eventId", eventId,
+                    "eventTime", t.toString(),
+                    "machineId", "M-WB",
+                    "durationMs", 1000,
+                    "defectCount", 1
+            )));
+            responses.add(es.submit(() -> mockMvc.perform(post("/api/v1/events/batch")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(json))
+                    .andReturn()));
+            Thread.sleep(100);
+        }
+
+        assertThat(responses.get(0).get(10, TimeUnit.SECONDS).getResponse().getStatus()).isEqualTo(500);
+        MvcResult innocent = responses.get(1).get(10, TimeUnit.SECONDS);
+        assertThat(innocent.getResponse().getStatus()).isEqualTo(200);
+        assertThat(objectMapper.readTree(innocent.getResponse().getContentAsString()).get("accepted").asInt()).isEqualTo(1);
+        es.shutdownNow();
+
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM events WHERE event_id = 'WB-INNOCENT'", Long.class)).isEqualTo(1L);
+    }
+}